@@ -0,0 +1,323 @@
+package com.hmdp.config;
+
+import com.hmdp.utils.CacheStrategy;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 缓存相关配置，前缀 hmdp.cache
+ * @author Ace
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "hmdp.cache")
+public class CacheProperties {
+
+    /**
+     * 写入缓存时使用的编码器名称：json、jsonb，读取时按值头部中的编号自动选择
+     * 默认 json，所有节点都升级到能读取 jsonb 的版本后再切换，避免旧节点读不出新格式
+     */
+    private String codec = "json";
+
+    /**
+     * 过期时间随机抖动比例，实际过期时间为 ttl * (1 + [0, ttlJitter))，避免同一批数据同时过期
+     * 为 0 时不抖动，建议开启时配置为 0.1
+     */
+    private double ttlJitter = 0;
+
+    /**
+     * 提前刷新系数（XFetch 算法中的 beta），越大越早刷新，为 0 时关闭提前刷新
+     * 默认关闭，建议开启时配置为 1.0
+     */
+    private double earlyRefreshBeta = 0;
+
+    /**
+     * 本地一级缓存，key 为缓存 key 前缀，未配置的前缀不启用本地缓存
+     * 例如：hmdp.cache.local[cache:shop:].maximum-size=1000
+     */
+    private Map<String, Local> local = new HashMap<>();
+
+    /**
+     * 布隆过滤器，key 为缓存 key 前缀，未配置的前缀不启用
+     * 例如：hmdp.cache.bloom[cache:shop:].expected-insertions=1000000
+     */
+    private Map<String, Bloom> bloom = new HashMap<>();
+
+    /**
+     * 哈希桶存储，key 为缓存 key 前缀，未配置的前缀每条数据一个 String key；
+     * 作用于该前缀的所有读写（各查询策略、预热、set/get），只对 id 为数字的 key 生效，版本号仍是独立的 String key
+     * 例如：hmdp.cache.bucket[cache:shop:].size=100
+     */
+    private Map<String, Bucket> bucket = new HashMap<>();
+
+    /**
+     * @HmdpCached 的查询策略，key 为缓存 key 前缀，覆盖注解上声明的策略
+     * 例如：hmdp.cache.strategy[cache:shop:]=mutex；运行时还可以通过 PUT /cache/strategy 覆盖
+     */
+    private Map<String, CacheStrategy> strategy = new HashMap<>();
+
+    /**
+     * 缓存预热
+     */
+    private Warmup warmup = new Warmup();
+
+    /**
+     * 缓存重建调度
+     */
+    private Rebuild rebuild = new Rebuild();
+
+    /**
+     * 热点 key 探测与本地副本
+     */
+    private HotKey hotKey = new HotKey();
+
+    /**
+     * 缓存值压缩
+     */
+    private Compression compression = new Compression();
+
+    /**
+     * 缓存失效
+     */
+    private Invalidation invalidation = new Invalidation();
+
+    /**
+     * key 维护：按前缀删除、大 key 采样
+     */
+    private Maintenance maintenance = new Maintenance();
+
+    /**
+     * Redis 熔断与降级
+     */
+    private Breaker breaker = new Breaker();
+
+    /**
+     * 可以访问 /cache/** 管理接口的用户 id，为空时所有用户都不能访问
+     * 例如：hmdp.cache.admin-user-ids=1,2
+     */
+    private Set<Long> adminUserIds = new HashSet<>();
+
+    @Data
+    public static class Breaker {
+        /**
+         * 为 false 时所有调用直接访问 Redis，Redis 访问失败时仍然降级；默认关闭，由运维按需开启
+         */
+        private boolean enabled = false;
+        /**
+         * 统计最近多少次调用
+         */
+        private int windowSize = 100;
+        /**
+         * 窗口内调用次数达到该值后才会判断是否打开
+         */
+        private int minimumCalls = 20;
+        /**
+         * 失败和慢调用占比达到该百分比时打开
+         */
+        private int failureRateThreshold = 50;
+        /**
+         * 耗时超过该值的调用按失败统计
+         */
+        private Duration slowCallThreshold = Duration.ofMillis(200);
+        /**
+         * 打开后经过多久进入半开状态
+         */
+        private Duration openDuration = Duration.ofSeconds(10);
+        /**
+         * 半开状态下放行的试探调用次数
+         */
+        private int halfOpenCalls = 5;
+        /**
+         * 降级用的本地旧数据的最大条目数
+         */
+        private long staleMaximumSize = 10_000;
+        /**
+         * 本地旧数据写入后保留多久
+         */
+        private Duration staleTtl = Duration.ofMinutes(10);
+        /**
+         * 降级时同时查询数据库的最大请求数
+         */
+        private int dbConcurrency = 20;
+        /**
+         * 降级时等待数据库查询名额的最长时间，超时后请求失败
+         */
+        private Duration dbWait = Duration.ofMillis(200);
+    }
+
+    @Data
+    public static class Maintenance {
+        /**
+         * SCAN 每次返回的 key 数，也是每批 UNLINK 的 key 数
+         */
+        private int scanBatchSize = 500;
+        /**
+         * 按前缀删除时每秒最多执行的批次数
+         */
+        private int batchesPerSecond = 10;
+        /**
+         * 大 key 采样默认最多遍历的 key 数
+         */
+        private int bigKeyMaxScan = 100_000;
+        /**
+         * 大 key 采样默认每个前缀返回的 key 数
+         */
+        private int bigKeyTop = 10;
+        /**
+         * cache: 之外允许按前缀删除的 key 前缀，默认为可以重建的收件箱和点赞集合；
+         * 登录、秒杀、订单队列以及缓存版本号、策略覆盖即使配置在这里也不能删除
+         */
+        private Set<String> allowedPrefixes = new HashSet<>(Set.of("feed:", "blog:liked:"));
+    }
+
+    @Data
+    public static class Invalidation {
+        /**
+         * 延迟双删的延迟时间，应略大于一次读请求回源并写回缓存的耗时，为 0 时不做第二次删除
+         */
+        private Duration doubleDeleteDelay = Duration.ofMillis(500);
+        /**
+         * 时间轮的 tick，延迟删除的误差不超过一个 tick
+         */
+        private Duration tickDuration = Duration.ofMillis(100);
+    }
+
+    @Data
+    public static class Compression {
+        /**
+         * 编码后超过该字节数才压缩，为 0 时关闭压缩；默认关闭，建议开启时配置为 1024
+         */
+        private int threshold = 0;
+        /**
+         * deflate 压缩级别 1-9，越大压缩率越高、越耗 CPU
+         */
+        private int level = 1;
+    }
+
+    @Data
+    public static class HotKey {
+        /**
+         * 是否启用，默认关闭；启用后热点 key 可能读到最多 ttl 的旧数据
+         */
+        private boolean enabled = false;
+        /**
+         * count-min sketch 每行的计数器个数，会向上取整为 2 的幂
+         */
+        private int width = 4096;
+        /**
+         * count-min sketch 的行数（哈希函数个数）
+         */
+        private int depth = 4;
+        /**
+         * 晋升为热点的读取次数，计数每个衰减周期减半，稳定状态下约为每周期读取次数的 2 倍
+         */
+        private long threshold = 1000;
+        /**
+         * 计数衰减周期
+         */
+        private Duration decayInterval = Duration.ofSeconds(5);
+        /**
+         * 本地副本的存活时间，决定了热点 key 在失效广播丢失时最多读到多久的旧数据
+         */
+        private Duration ttl = Duration.ofSeconds(1);
+        /**
+         * 本地副本最大条目数
+         */
+        private long maximumSize = 1000;
+    }
+
+    @Data
+    public static class Rebuild {
+        /**
+         * 是否使用虚拟线程执行重建
+         */
+        private boolean virtualThreads = true;
+        /**
+         * 同时执行的重建任务数，也就是重建时对数据库的最大并发
+         */
+        private int concurrency = 10;
+        /**
+         * 等待队列长度，队列满时放弃重建并继续返回旧值
+         */
+        private int queueCapacity = 1000;
+        /**
+         * 单次重建超过该耗时视为数据库变慢，触发退避
+         */
+        private Duration slowThreshold = Duration.ofMillis(500);
+        /**
+         * 首次退避时长，连续失败或超时时翻倍
+         */
+        private Duration backoffBase = Duration.ofSeconds(1);
+        /**
+         * 最长退避时长
+         */
+        private Duration backoffMax = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Warmup {
+        /**
+         * 是否在启动完成后自动预热
+         */
+        private boolean onStartup = false;
+        /**
+         * 每批写入 Redis 的条数
+         */
+        private int batchSize = 500;
+        /**
+         * 同时写入 Redis 的批次数
+         */
+        private int parallelism = 4;
+    }
+
+    @Data
+    public static class Bloom {
+        /**
+         * 预期元素个数
+         */
+        private long expectedInsertions = 1_000_000;
+        /**
+         * 误判率
+         */
+        private double fpp = 0.01;
+        /**
+         * 为 true 时只使用 Redis bitmap 判断，每次判断多一次网络往返，但不占用本地内存
+         */
+        private boolean redisOnly = false;
+        /**
+         * 本地位数组从 Redis bitmap 同步的间隔，用于弥补丢失的广播消息
+         */
+        private Duration refreshInterval = Duration.ofMinutes(5);
+    }
+
+    @Data
+    public static class Bucket {
+        /**
+         * 每个桶存放的 id 个数，id / size 相同的数据放在同一个 Hash 中；
+         * 只有 Hash 使用 listpack 紧凑编码时才能节省内存，需要同时满足：
+         * 1.size 不超过 Redis 的 hash-max-listpack-entries（默认 128）
+         * 2.单条缓存值（含值头部）不超过 hash-max-listpack-value（默认 64 字节），桶中任意一条超过时整个桶转换为普通哈希表，
+         * 内存占用与每条一个 String key 相当甚至更多；缓存值较大的前缀不要启用
+         */
+        private int size = 100;
+    }
+
+    @Data
+    public static class Local {
+        /**
+         * 最大条目数
+         */
+        private long maximumSize = 1000;
+        /**
+         * 写入后存活时间，应明显小于 Redis 中的 TTL
+         */
+        private Duration ttl = Duration.ofSeconds(30);
+    }
+}
@@ -1,7 +1,11 @@
 package com.hmdp.config;
 
+import com.hmdp.utils.AdminInterceptor;
 import com.hmdp.utils.LoginInterceptor;
+import com.hmdp.utils.RedisCircuitBreaker;
 import com.hmdp.utils.RefreshTokenInterceptor;
+import com.hmdp.utils.SeckillAdmission;
+import com.hmdp.utils.SeckillAdmissionInterceptor;
 import jakarta.annotation.Resource;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.core.StringRedisTemplate;
@@ -18,10 +22,19 @@ public class MvcConfig implements WebMvcConfigurer {
     @Resource
     private StringRedisTemplate stringRedisTemplate;
 
+    @Resource
+    private RedisCircuitBreaker redisCircuitBreaker;
+
+    @Resource
+    private SeckillAdmission seckillAdmission;
+
+    @Resource
+    private CacheProperties cacheProperties;
+
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
         //token刷新拦截器
-        registry.addInterceptor(new RefreshTokenInterceptor(stringRedisTemplate)).order(0);
+        registry.addInterceptor(new RefreshTokenInterceptor(stringRedisTemplate, redisCircuitBreaker)).order(0);
         //登录拦截器
         registry.addInterceptor(new LoginInterceptor())
                .excludePathPatterns(
@@ -33,5 +46,13 @@ public class MvcConfig implements WebMvcConfigurer {
                        "/upload/**",
                        "/voucher/**"
                ).order(1);
+        //秒杀准入拦截器
+        registry.addInterceptor(new SeckillAdmissionInterceptor(seckillAdmission))
+                .addPathPatterns("/voucher-order/seckill/*")
+                .order(2);
+        //管理接口拦截器
+        registry.addInterceptor(new AdminInterceptor(cacheProperties))
+                .addPathPatterns("/cache/**")
+                .order(3);
         }
 }
@@ -0,0 +1,163 @@
+package com.hmdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+
+/**
+ * 秒杀相关配置，前缀 hmdp.seckill
+ * @author Ace
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "hmdp.seckill")
+public class SeckillProperties {
+
+    /**
+     * 订单队列消费者
+     */
+    private Consumer consumer = new Consumer();
+
+    /**
+     * 库存分片
+     */
+    private Stock stock = new Stock();
+
+    /**
+     * 秒杀请求的准入控制
+     */
+    private Admission admission = new Admission();
+
+    /**
+     * 订单结果通知
+     */
+    private Notify notify = new Notify();
+
+    @Data
+    public static class Notify {
+        /**
+         * 订单结果在 Redis 中保留的时间
+         */
+        private Duration statusTtl = Duration.ofMinutes(30);
+        /**
+         * 长轮询最多等待的时间，超时返回 PENDING
+         */
+        private Duration pollTimeout = Duration.ofSeconds(30);
+        /**
+         * SSE 连接最多保持的时间
+         */
+        private Duration sseTimeout = Duration.ofMinutes(2);
+    }
+
+    @Data
+    public static class Admission {
+        /**
+         * 为 false 时不做准入控制
+         */
+        private boolean enabled = true;
+        /**
+         * 每个节点每张秒杀券每秒放行的请求数
+         */
+        private double localRate = 1000;
+        /**
+         * 每个节点每张秒杀券允许的突发请求数
+         */
+        private int localBurst = 2000;
+        /**
+         * 所有节点每张秒杀券每秒放行的请求数，为 0 时不使用全局令牌桶
+         */
+        private double globalRate = 5000;
+        /**
+         * 所有节点每张秒杀券允许的突发请求数
+         */
+        private int globalBurst = 10000;
+        /**
+         * 为 true 时启用等候室，用户需要先领取排队号，轮到后才能秒杀
+         */
+        private boolean waitingRoom = false;
+        /**
+         * 等候室每秒放行的人数
+         */
+        private int admitRate = 500;
+        /**
+         * 等候室一次推进最多放行的人数，长时间没有人查询排队状态时，积累的名额不会一次全部放行
+         */
+        private int admitBurst = 500;
+        /**
+         * 等候室最多排队人数
+         */
+        private int maxQueue = 100_000;
+    }
+
+    @Data
+    public static class Stock {
+        /**
+         * 新建秒杀券时库存拆分的分片数，为 1 时不分片；已经创建的秒杀券按创建时记录的分片数处理
+         */
+        private int shards = 1;
+        /**
+         * 距离秒杀结束多久开始在分片之间平衡剩余库存
+         */
+        private Duration rebalanceBefore = Duration.ofMinutes(1);
+        /**
+         * 平衡库存的间隔
+         */
+        private Duration rebalanceInterval = Duration.ofSeconds(5);
+    }
+
+    @Data
+    public static class Consumer {
+        /**
+         * 每次从 stream.orders 读取的最大订单数，一批订单在一个事务中写入；为 1 时逐条处理
+         * 默认逐条处理，订单量大时由运维调大，例如 100
+         */
+        private int batchSize = 1;
+        /**
+         * 读到第一条订单后最多再等待多久凑满一批，为 0 时有多少处理多少
+         */
+        private Duration linger = Duration.ofMillis(50);
+        /**
+         * 订单 stream 的分区数，大于 1 时按 userId 取模写入 stream.orders.{n}；修改前需要先消费完已有的订单
+         */
+        private int partitions = 1;
+        /**
+         * 每个节点的消费线程数，每个线程是消费组中一个独立的消费者
+         */
+        private int threads = 1;
+        /**
+         * 消息未确认超过该时长后，视为消费者已经宕机，由其他节点认领
+         */
+        private Duration claimIdle = Duration.ofMinutes(1);
+        /**
+         * 认领空闲消息的间隔
+         */
+        private Duration claimInterval = Duration.ofSeconds(30);
+        /**
+         * 没有未确认消息、空闲超过该时长的消费者会被删除
+         */
+        private Duration consumerExpire = Duration.ofHours(1);
+        /**
+         * 同一条订单消息最多投递的次数，仍然失败时移到 stream.orders.dead 并确认，归还 Redis 中的库存，不再阻塞 pendingList；
+         * 数据库、Redis 暂时不可用导致的失败不计入，一直重试
+         */
+        private int maxDeliveries = 5;
+        /**
+         * pendingList 中的消息处理失败后第一次重试前等待的时间，之后每次翻倍
+         */
+        private Duration retryBackoff = Duration.ofMillis(20);
+        /**
+         * 重试前最多等待的时间
+         */
+        private Duration maxRetryBackoff = Duration.ofSeconds(5);
+        /**
+         * 本节点的标识，与线程编号一起组成消费者名称，每个节点、每个线程各自有独立的 pendingList；
+         * 默认为 pid@hostname，重启后会变化，上次未确认的消息要等空闲超过 claimIdle 后才被其他节点认领；
+         * 配置为重启后不变的值（例如 StatefulSet 的 Pod 名称）时，重启后启动阶段就会处理自己上次未确认的消息；
+         * 同时运行的节点不能使用相同的值
+         */
+        private String nodeId = ManagementFactory.getRuntimeMXBean().getName();
+    }
+}
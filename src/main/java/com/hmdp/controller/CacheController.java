@@ -0,0 +1,140 @@
+package com.hmdp.controller;
+
+
+import com.hmdp.dto.Result;
+import com.hmdp.service.ICacheMaintenanceService;
+import com.hmdp.service.ICacheWarmupService;
+import com.hmdp.utils.CacheMetrics;
+import com.hmdp.utils.CacheStrategy;
+import com.hmdp.utils.CacheStrategyRegistry;
+import com.hmdp.utils.HotKeyDetector;
+import jakarta.annotation.Resource;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * 缓存管理控制器，只有 hmdp.cache.admin-user-ids 中的用户可以访问
+ * @author Ace
+ */
+@RestController
+@RequestMapping("/cache")
+public class CacheController {
+
+    @Resource
+    private ICacheWarmupService cacheWarmupService;
+
+    @Resource
+    private CacheMetrics cacheMetrics;
+
+    @Resource
+    private HotKeyDetector hotKeyDetector;
+
+    @Resource
+    private CacheStrategyRegistry cacheStrategyRegistry;
+
+    @Resource
+    private ICacheMaintenanceService cacheMaintenanceService;
+
+    /**
+     * 预热全部商铺的逻辑过期缓存，异步执行
+     * @return 预热进度
+     */
+    @PostMapping("/warmup/shop")
+    public Result warmupShop() {
+        return cacheWarmupService.warmupShop();
+    }
+
+    /**
+     * 查询预热进度
+     * @return 各缓存前缀的预热进度
+     */
+    @GetMapping("/warmup")
+    public Result queryWarmupProgress() {
+        return cacheWarmupService.queryProgress();
+    }
+
+    /**
+     * 按缓存前缀汇总的命中率、Redis 耗时、回源耗时等指标，与 /actuator/cache 内容一致
+     * @return 前缀到统计数据的映射
+     */
+    @GetMapping("/stats")
+    public Result stats() {
+        return Result.ok(cacheMetrics.snapshot());
+    }
+
+    /**
+     * 当前节点探测到的热点 key
+     * @return 按估计读取次数从高到低排列的热点 key
+     */
+    @GetMapping("/hot-keys")
+    public Result hotKeys() {
+        return Result.ok(hotKeyDetector.hotKeys());
+    }
+
+    /**
+     * 查询运行时覆盖的缓存策略
+     * @return 缓存前缀到策略的映射
+     */
+    @GetMapping("/strategy")
+    public Result queryStrategy() {
+        return Result.ok(cacheStrategyRegistry.overrides());
+    }
+
+    /**
+     * 运行时切换某个缓存前缀的查询策略，所有节点立即生效
+     * @param prefix 缓存前缀，例如 cache:shop:
+     * @param strategy 新的策略，不传时恢复配置或注解上的策略
+     */
+    @PutMapping("/strategy")
+    public Result updateStrategy(@RequestParam("prefix") String prefix,
+                                 @RequestParam(value = "strategy", required = false) CacheStrategy strategy) {
+        cacheStrategyRegistry.update(prefix, strategy);
+        return Result.ok();
+    }
+
+    /**
+     * 按前缀删除 key，异步分批执行
+     * @param prefix key 前缀，必须以冒号结尾，例如 cache:shop:
+     * @return 删除进度
+     */
+    @DeleteMapping("/prefix")
+    public Result invalidatePrefix(@RequestParam("prefix") String prefix) {
+        return cacheMaintenanceService.invalidatePrefix(prefix);
+    }
+
+    /**
+     * 查询按前缀删除的进度
+     * @return 各前缀最近一次删除的进度
+     */
+    @GetMapping("/prefix")
+    public Result queryInvalidation() {
+        return cacheMaintenanceService.queryInvalidation();
+    }
+
+    /**
+     * 删除单个大 key，Redis 在后台线程释放内存
+     * @param key 缓存 key，例如 cache:blog:1
+     * @return 是否删除
+     */
+    @DeleteMapping("/key")
+    public Result unlinkKey(@RequestParam("key") String key) {
+        return cacheMaintenanceService.unlinkKey(key);
+    }
+
+    /**
+     * 采样各前缀下占用内存最多的 key
+     * @param maxKeys 最多遍历的 key 数
+     * @param top 每个前缀返回的 key 数
+     * @return 各前缀的采样结果
+     */
+    @GetMapping("/big-keys")
+    public Result sampleBigKeys(@RequestParam(value = "maxKeys", required = false) Integer maxKeys,
+                                @RequestParam(value = "top", required = false) Integer top) {
+        return cacheMaintenanceService.sampleBigKeys(maxKeys, top);
+    }
+}
@@ -1,7 +1,6 @@
 package com.hmdp.controller;
 
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.hmdp.dto.Result;
 import com.hmdp.service.IShopTypeService;
 import jakarta.annotation.Resource;
@@ -25,10 +24,9 @@ public class ShopTypeController {
     /**
      * 查询商铺类型列表
      * @return 商铺类型列表
-     * @throws JsonProcessingException 异常
      */
     @GetMapping("list")
-    public Result queryTypeList() throws JsonProcessingException {
+    public Result queryTypeList() {
         return typeService.queryTypeList();
     }
 }
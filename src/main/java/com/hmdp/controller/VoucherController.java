@@ -26,7 +26,7 @@ public class VoucherController {
      */
     @PostMapping
     public Result addVoucher(@RequestBody Voucher voucher) {
-        voucherService.save(voucher);
+        voucherService.addVoucher(voucher);
         return Result.ok(voucher.getId());
     }
 
@@ -41,6 +41,17 @@ public class VoucherController {
         return Result.ok(voucher.getId());
     }
 
+    /**
+     * 补充秒杀券库存，所有节点的售罄标记会被清除
+     * @param voucherId 优惠券id
+     * @param amount 补充的数量
+     * @return 无
+     */
+    @PutMapping("seckill/{id}/stock")
+    public Result addSeckillStock(@PathVariable("id") Long voucherId, @RequestParam("amount") Integer amount) {
+        return voucherService.addSeckillStock(voucherId, amount);
+    }
+
     /**
      * 查询店铺的优惠券列表
      * @param shopId 店铺id
@@ -5,10 +5,14 @@ import com.hmdp.dto.Result;
 import com.hmdp.service.IVoucherOrderService;
 import com.hmdp.service.impl.VoucherOrderServiceImpl;
 import jakarta.annotation.Resource;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 /**
  * 优惠券抢购控制器
@@ -30,4 +34,54 @@ public class VoucherOrderController {
     public Result seckillVoucher(@PathVariable("id") Long voucherId) {
         return voucherOrderService.seckillVoucher(voucherId);
     }
+
+    /**
+     * 进入秒杀等候室，领取排队号
+     * @param voucherId 优惠券ID
+     * @return 排队号
+     */
+    @PostMapping("seckill/{id}/ticket")
+    public Result joinQueue(@PathVariable("id") Long voucherId) {
+        return voucherOrderService.joinQueue(voucherId);
+    }
+
+    /**
+     * 查询排队状态，轮到后再秒杀
+     * @param voucherId 优惠券ID
+     * @return 排队号
+     */
+    @GetMapping("seckill/{id}/ticket")
+    public Result queryQueue(@PathVariable("id") Long voucherId) {
+        return voucherOrderService.queryQueue(voucherId);
+    }
+
+    /**
+     * 查询秒杀订单的处理结果
+     * @param orderId 秒杀返回的订单ID
+     * @return PENDING、PERSISTED 或 FAILED
+     */
+    @GetMapping("{id}/status")
+    public Result queryOrderStatus(@PathVariable("id") Long orderId) {
+        return voucherOrderService.queryOrderStatus(orderId);
+    }
+
+    /**
+     * 长轮询秒杀订单的处理结果，有结果或超时后返回，等待期间不占用请求线程
+     * @param orderId 秒杀返回的订单ID
+     * @return PENDING、PERSISTED 或 FAILED
+     */
+    @GetMapping("{id}/status/poll")
+    public DeferredResult<Result> waitOrderStatus(@PathVariable("id") Long orderId) {
+        return voucherOrderService.waitOrderStatus(orderId);
+    }
+
+    /**
+     * 通过 SSE 推送秒杀订单的处理结果，推送后关闭连接
+     * @param orderId 秒杀返回的订单ID
+     * @return status 事件
+     */
+    @GetMapping(value = "{id}/status/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeOrderStatus(@PathVariable("id") Long orderId) {
+        return voucherOrderService.subscribeOrderStatus(orderId);
+    }
 }
@@ -0,0 +1,40 @@
+package com.hmdp.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 某个 key 前缀的大 key 采样结果
+ * @author Ace
+ */
+@Data
+public class BigKeySample {
+    /**
+     * key 前缀，来自 RedisConstants
+     */
+    private String keyPrefix;
+    /**
+     * 采样到的 key 数
+     */
+    private long sampled;
+    /**
+     * 采样到的 key 占用的内存总量（字节）
+     */
+    private long totalBytes;
+    /**
+     * 占用内存最多的 key，从大到小排列
+     */
+    private List<BigKey> topKeys = new ArrayList<>();
+
+    @Data
+    public static class BigKey {
+        private String key;
+        private String type;
+        /**
+         * MEMORY USAGE 返回的字节数
+         */
+        private long bytes;
+    }
+}
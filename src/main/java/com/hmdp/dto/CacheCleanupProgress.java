@@ -0,0 +1,36 @@
+package com.hmdp.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按前缀删除 key 的进度
+ * @author Ace
+ */
+@Data
+public class CacheCleanupProgress {
+    /**
+     * key 前缀
+     */
+    private String keyPrefix;
+    /**
+     * 是否正在删除
+     */
+    private volatile boolean running;
+    /**
+     * SCAN 遍历到的 key 数
+     */
+    private final AtomicLong scanned = new AtomicLong();
+    /**
+     * 已删除的 key 数
+     */
+    private final AtomicLong deleted = new AtomicLong();
+    /**
+     * 失败原因，成功时为 null
+     */
+    private volatile String error;
+    private LocalDateTime startTime;
+    private volatile LocalDateTime endTime;
+}
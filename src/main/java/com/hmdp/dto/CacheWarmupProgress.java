@@ -0,0 +1,36 @@
+package com.hmdp.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 缓存预热进度
+ * @author Ace
+ */
+@Data
+public class CacheWarmupProgress {
+    /**
+     * 缓存 key 前缀
+     */
+    private String keyPrefix;
+    /**
+     * 预热时该前缀使用的查询策略，决定写入的格式
+     */
+    private String strategy;
+    /**
+     * 是否正在预热
+     */
+    private volatile boolean running;
+    /**
+     * 已写入 Redis 的条数
+     */
+    private final AtomicLong written = new AtomicLong();
+    /**
+     * 写入失败的条数
+     */
+    private final AtomicLong failed = new AtomicLong();
+    private LocalDateTime startTime;
+    private volatile LocalDateTime endTime;
+}
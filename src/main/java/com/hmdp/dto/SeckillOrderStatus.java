@@ -0,0 +1,24 @@
+package com.hmdp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 秒杀订单的处理结果
+ * @author Ace
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SeckillOrderStatus {
+    public static final String PENDING = "PENDING";
+    public static final String PERSISTED = "PERSISTED";
+    public static final String FAILED = "FAILED";
+
+    private Long orderId;
+    /**
+     * PENDING：订单消息还没有处理；PERSISTED：订单已写入数据库；FAILED：订单没有写入（重复下单，或多次处理失败后移到死信队列）
+     */
+    private String status;
+}
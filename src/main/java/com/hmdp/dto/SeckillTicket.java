@@ -0,0 +1,24 @@
+package com.hmdp.dto;
+
+import lombok.Data;
+
+/**
+ * 秒杀等候室的排队号
+ * @author Ace
+ */
+@Data
+public class SeckillTicket {
+    private Long voucherId;
+    /**
+     * 排队号，未排队时为 0
+     */
+    private Long ticket;
+    /**
+     * 是否已经轮到，轮到后可以秒杀
+     */
+    private Boolean admitted;
+    /**
+     * 前面还有多少人
+     */
+    private Long ahead;
+}
@@ -2,8 +2,20 @@ package com.hmdp.mapper;
 
 import com.hmdp.entity.Shop;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.mapping.ResultSetType;
 
 
 public interface ShopMapper extends BaseMapper<Shop> {
 
+    /**
+     * 流式读取全部商铺 id，MySQL 驱动按行返回，不会一次性加载到内存
+     * 需要在事务中使用，遍历结束前连接不能释放
+     * @return 游标
+     */
+    @Select("SELECT id FROM tb_shop")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = Integer.MIN_VALUE)
+    Cursor<Long> scanAllIds();
 }
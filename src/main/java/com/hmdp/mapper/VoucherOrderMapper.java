@@ -2,8 +2,23 @@ package com.hmdp.mapper;
 
 import com.hmdp.entity.VoucherOrder;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
 
 
 public interface VoucherOrderMapper extends BaseMapper<VoucherOrder> {
 
+    /**
+     * 一条 INSERT IGNORE 写入多个订单，其余字段使用表的默认值
+     * 主键或唯一索引 (user_id, voucher_id) 冲突的订单被忽略，重复投递的消息和重复下单都不会写入
+     * @param orders 订单，不能为空
+     * @return 实际写入的行数，不包括被忽略的订单
+     */
+    @Insert("<script>" +
+            "INSERT IGNORE INTO tb_voucher_order (id, user_id, voucher_id) VALUES " +
+            "<foreach collection='orders' item='o' separator=','>(#{o.id}, #{o.userId}, #{o.voucherId})</foreach>" +
+            "</script>")
+    int insertBatch(@Param("orders") List<VoucherOrder> orders);
 }
@@ -0,0 +1,38 @@
+package com.hmdp.service;
+
+import com.hmdp.dto.Result;
+
+/**
+ * Redis key 维护：按前缀删除、大 key 删除和采样
+ * @author Ace
+ */
+public interface ICacheMaintenanceService {
+
+    /**
+     * 异步按前缀删除 key，使用 SCAN + UNLINK 分批进行，不阻塞 Redis
+     * @param keyPrefix key 前缀，必须以冒号结尾
+     * @return 删除进度
+     */
+    Result invalidatePrefix(String keyPrefix);
+
+    /**
+     * 查询按前缀删除的进度
+     * @return 各前缀最近一次删除的进度
+     */
+    Result queryInvalidation();
+
+    /**
+     * 删除单个 key，使用 UNLINK 在后台线程释放内存，适合大 ZSET 等大 key
+     * @param key key
+     * @return 是否删除
+     */
+    Result unlinkKey(String key);
+
+    /**
+     * 采样 RedisConstants 中各前缀下占用内存最多的 key
+     * @param maxKeys 最多遍历的 key 数
+     * @param top 每个前缀返回的 key 数
+     * @return 各前缀的采样结果
+     */
+    Result sampleBigKeys(Integer maxKeys, Integer top);
+}
@@ -0,0 +1,22 @@
+package com.hmdp.service;
+
+import com.hmdp.dto.Result;
+
+/**
+ * 缓存预热服务
+ * @author Ace
+ */
+public interface ICacheWarmupService {
+
+    /**
+     * 异步预热全部商铺的逻辑过期缓存
+     * @return 预热进度
+     */
+    Result warmupShop();
+
+    /**
+     * 查询各缓存前缀的预热进度
+     * @return 预热进度
+     */
+    Result queryProgress();
+}
@@ -18,6 +18,13 @@ public interface IShopService extends IService<Shop> {
      */
     Result queryById(Long id);
 
+    /**
+     * 新增商铺信息
+     * @param shop 商铺数据
+     * @return 商铺id
+     */
+    Result saveShop(Shop shop);
+
     /**
      * 更新商铺信息
      * @param shop
@@ -1,6 +1,5 @@
 package com.hmdp.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.hmdp.dto.Result;
 import com.hmdp.entity.ShopType;
 import com.baomidou.mybatisplus.extension.service.IService;
@@ -16,5 +15,5 @@ public interface IShopTypeService extends IService<ShopType> {
      * 查询商铺类型列表
      * @return
      */
-    Result queryTypeList() throws JsonProcessingException;
+    Result queryTypeList();
 }
@@ -3,9 +3,12 @@ package com.hmdp.service;
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.hmdp.dto.LoginFormDTO;
 import com.hmdp.dto.Result;
+import com.hmdp.dto.UserDTO;
 import com.hmdp.entity.User;
 import jakarta.servlet.http.HttpSession;
 
+import java.util.List;
+
 
 /**
  * @author Ace
@@ -23,5 +26,12 @@ public interface IUserService extends IService<User> {
 
     Result signCount();
 
+    /**
+     * 批量查询用户信息，优先走缓存
+     * @param ids 用户ID列表
+     * @return 用户信息，顺序与 ids 一致
+     */
+    List<UserDTO> queryUserDTOsByIds(List<Long> ids);
+
 }
 
@@ -4,12 +4,24 @@ import com.hmdp.dto.Result;
 import com.hmdp.entity.VoucherOrder;
 import com.baomidou.mybatisplus.extension.service.IService;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 
 public interface IVoucherOrderService extends IService<VoucherOrder> {
 
     Result seckillVoucher(Long voucherId);
 
+    Result joinQueue(Long voucherId);
+
+    Result queryQueue(Long voucherId);
+
+    Result queryOrderStatus(Long orderId);
+
+    DeferredResult<Result> waitOrderStatus(Long orderId);
+
+    SseEmitter subscribeOrderStatus(Long orderId);
+
 
     /*@Override
         public Result seckillVoucher(Long voucherId) {
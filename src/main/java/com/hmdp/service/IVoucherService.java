@@ -4,10 +4,21 @@ import com.hmdp.dto.Result;
 import com.hmdp.entity.Voucher;
 import com.baomidou.mybatisplus.extension.service.IService;
 
+import java.util.List;
+
 
 public interface IVoucherService extends IService<Voucher> {
 
     Result queryVoucherOfShop(Long shopId);
 
+    /**
+     * 查询店铺的优惠券列表，不含库存，结果会被缓存
+     */
+    List<Voucher> queryVoucherListOfShop(Long shopId);
+
+    void addVoucher(Voucher voucher);
+
     void addSeckillVoucher(Voucher voucher);
+
+    Result addSeckillStock(Long voucherId, Integer amount);
 }
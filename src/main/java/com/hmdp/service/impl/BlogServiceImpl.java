@@ -1,5 +1,6 @@
 package com.hmdp.service.impl;
 
+import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.util.StrUtil;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.hmdp.dto.Result;
@@ -13,6 +14,8 @@ import com.hmdp.service.IBlogService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.hmdp.service.IFollowService;
 import com.hmdp.service.IUserService;
+import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.CacheInvalidator;
 import com.hmdp.utils.SystemConstants;
 import com.hmdp.utils.UserHolder;
 import jakarta.annotation.Resource;
@@ -24,10 +27,14 @@ import org.springframework.stereotype.Service;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static com.hmdp.utils.RedisConstants.BLOG_LIKED_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_BLOG_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_BLOG_TTL;
 import static com.hmdp.utils.RedisConstants.FEED_KEY;
 
 
@@ -48,6 +55,12 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
     @Resource
     private IFollowService followService;
 
+    @Resource
+    private CacheClient cacheClient;
+
+    @Resource
+    private CacheInvalidator cacheInvalidator;
+
     @Override
     public Result queryBlogById(Long id) {
         //1.查询blog
@@ -106,6 +119,7 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
             //3.2保存点赞用户到redis的set集合
             if (isSuccess) {
                 stringRedisTemplate.opsForZSet().add(key, userId.toString(), System.currentTimeMillis());
+                cacheInvalidator.invalidate(CACHE_BLOG_KEY + id);
             }
         } else {
             //4.如果已点赞，可以取消点赞
@@ -114,6 +128,7 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
             //4.2把当前用户从redis的set集合中删除
             if (isSuccess) {
                 stringRedisTemplate.opsForZSet().remove(key, userId.toString());
+                cacheInvalidator.invalidate(CACHE_BLOG_KEY + id);
             }
         }
         return Result.ok();
@@ -206,16 +221,18 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
             }
 
         }
-        //4.根据id查询blog,但要指定顺序的
-        String idStr = StrUtil.join(",", ids);
-        List<Blog> blogs = query().in("id", ids)
-                .last("order by field ( id, " + idStr + ")").list();
-        blogs.forEach(blog -> {
-            //4.1.查询blog有关的用户
-            queryBlogUser(blog);
-            //4.2查询blog是否被点赞
-            isBlogLiked(blog);
-        });
+        //4.根据id批量查询blog，一次 MGET，未命中的合并为一次 IN 查询，结果与 ids 顺序一致
+        List<Blog> blogs = cacheClient.queryBatchWithPassThrough(CACHE_BLOG_KEY, ids, Blog.class,
+                        missIds -> listByIds(missIds).stream().collect(Collectors.toMap(Blog::getId, blog -> blog)),
+                        CACHE_BLOG_TTL, TimeUnit.MINUTES)
+                .stream()
+                //缓存中的对象可能被本地缓存共享，复制后再填充用户和点赞信息
+                .map(blog -> BeanUtil.copyProperties(blog, Blog.class))
+                .collect(Collectors.toList());
+        //4.1.批量查询blog有关的用户
+        queryBlogUsers(blogs);
+        //4.2查询blog是否被点赞
+        blogs.forEach(this::isBlogLiked);
         //5.封装返回
         ScrollResult r = new ScrollResult();
         r.setList(blogs);
@@ -224,6 +241,19 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
         return Result.ok(r);
     }
 
+    private void queryBlogUsers(List<Blog> blogs) {
+        List<Long> userIds = blogs.stream().map(Blog::getUserId).distinct().collect(Collectors.toList());
+        Map<Long, UserDTO> userMap = userService.queryUserDTOsByIds(userIds).stream()
+                .collect(Collectors.toMap(UserDTO::getId, user -> user));
+        for (Blog blog : blogs) {
+            UserDTO user = userMap.get(blog.getUserId());
+            if (user != null) {
+                blog.setName(user.getNickName());
+                blog.setIcon(user.getIcon());
+            }
+        }
+    }
+
     private void queryBlogUser(Blog blog) {
         Long userId = blog.getUserId();
         User user = userService.getById(userId);
@@ -0,0 +1,336 @@
+package com.hmdp.service.impl;
+
+import cn.hutool.core.util.StrUtil;
+import com.hmdp.config.CacheProperties;
+import com.hmdp.dto.BigKeySample;
+import com.hmdp.dto.CacheCleanupProgress;
+import com.hmdp.dto.Result;
+import com.hmdp.service.ICacheMaintenanceService;
+import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.RedisConstants;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.DataType;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.hmdp.utils.RedisConstants.CACHE_STRATEGY_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_VERSION_KEY;
+import static com.hmdp.utils.RedisConstants.LOGIN_CODE_KEY;
+import static com.hmdp.utils.RedisConstants.LOGIN_USER_KEY;
+
+/**
+ * Redis key 维护服务实现类
+ * 按前缀删除时用 SCAN 分批遍历，每批一次 UNLINK，批次之间按配置限速，不会像 KEYS + DEL 那样阻塞 Redis
+ * @author Ace
+ */
+@Slf4j
+@Service
+public class CacheMaintenanceServiceImpl implements ICacheMaintenanceService {
+
+    /**
+     * 缓存数据的前缀，删除时需要同时更新版本号并通知各节点清除本地缓存
+     */
+    private static final String CACHE_FAMILY = "cache:";
+
+    /**
+     * 业务数据的前缀，不能通过维护接口删除
+     */
+    private static final List<String> PROTECTED_PREFIXES = List.of(
+            LOGIN_CODE_KEY, LOGIN_USER_KEY, "seckill:", "stream.", CACHE_VERSION_KEY, CACHE_STRATEGY_KEY);
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private CacheClient cacheClient;
+
+    @Resource
+    private CacheProperties cacheProperties;
+
+    /**
+     * 执行按前缀删除的线程，容器关闭时中断正在进行的删除
+     */
+    private final ExecutorService cleanupExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * 各前缀最近一次删除的进度
+     */
+    private final Map<String, CacheCleanupProgress> progressMap = new ConcurrentHashMap<>();
+
+    @Override
+    public Result invalidatePrefix(String keyPrefix) {
+        //必须是完整的前缀，避免误删全部 key
+        if (StrUtil.isBlank(keyPrefix) || !keyPrefix.endsWith(":") || keyPrefix.length() < 2) {
+            return Result.fail("key 前缀必须以冒号结尾");
+        }
+        //只能删除缓存数据和配置允许的前缀，登录、秒杀、订单队列等业务数据不能通过这个接口删除
+        if (!isDeletable(keyPrefix)) {
+            return Result.fail("只能删除 " + CACHE_FAMILY + " 下的缓存数据或允许删除的前缀："
+                    + cacheProperties.getMaintenance().getAllowedPrefixes());
+        }
+        CacheCleanupProgress progress = start(keyPrefix);
+        if (progress == null) {
+            return Result.fail("该前缀正在删除中");
+        }
+        cleanupExecutor.submit(() -> invalidate(progress));
+        return Result.ok(progress);
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        cleanupExecutor.shutdownNow();
+    }
+
+    @Override
+    public Result queryInvalidation() {
+        return Result.ok(progressMap.values());
+    }
+
+    @Override
+    public Result unlinkKey(String key) {
+        if (StrUtil.isBlank(key)) {
+            return Result.fail("key 不能为空");
+        }
+        if (!isDeletable(key)) {
+            return Result.fail("只能删除 " + CACHE_FAMILY + " 下的缓存数据或允许删除的前缀："
+                    + cacheProperties.getMaintenance().getAllowedPrefixes());
+        }
+        Boolean unlinked = stringRedisTemplate.unlink(key);
+        return Result.ok(Boolean.TRUE.equals(unlinked));
+    }
+
+    @Override
+    public Result sampleBigKeys(Integer maxKeys, Integer top) {
+        CacheProperties.Maintenance config = cacheProperties.getMaintenance();
+        int limit = maxKeys == null ? config.getBigKeyMaxScan() : maxKeys;
+        int topN = top == null ? config.getBigKeyTop() : top;
+        List<String> prefixes = prefixes();
+        Map<String, BigKeySample> samples = new TreeMap<>();
+        Map<String, PriorityQueue<BigKeySample.BigKey>> tops = new HashMap<>();
+        for (String prefix : prefixes) {
+            BigKeySample sample = new BigKeySample();
+            sample.setKeyPrefix(prefix);
+            samples.put(prefix, sample);
+            tops.put(prefix, new PriorityQueue<>(Comparator.comparingLong(BigKeySample.BigKey::getBytes)));
+        }
+        //1.一次 SCAN 遍历，按最长匹配的前缀分组，每批 key 用一次 pipeline 查询类型和内存占用
+        List<String> batch = new ArrayList<>(config.getScanBatchSize());
+        int scanned = 0;
+        try (Cursor<String> cursor = stringRedisTemplate.scan(
+                ScanOptions.scanOptions().count(config.getScanBatchSize()).build())) {
+            while (cursor.hasNext() && scanned < limit) {
+                batch.add(cursor.next());
+                scanned++;
+                if (batch.size() >= config.getScanBatchSize()) {
+                    sampleBatch(batch, prefixes, samples, tops, topN);
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            sampleBatch(batch, prefixes, samples, tops, topN);
+        }
+        //2.整理每个前缀占用内存最多的 key
+        tops.forEach((prefix, queue) -> {
+            List<BigKeySample.BigKey> topKeys = new ArrayList<>(queue);
+            topKeys.sort(Comparator.comparingLong(BigKeySample.BigKey::getBytes).reversed());
+            samples.get(prefix).setTopKeys(topKeys);
+        });
+        samples.values().removeIf(sample -> sample.getSampled() == 0);
+        return Result.ok(samples.values());
+    }
+
+    /**
+     * 查询一批 key 的类型和内存占用，计入所属前缀
+     */
+    private void sampleBatch(List<String> keys, List<String> prefixes,
+                             Map<String, BigKeySample> samples,
+                             Map<String, PriorityQueue<BigKeySample.BigKey>> tops,
+                             int topN) {
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String key : keys) {
+                byte[] rawKey = key.getBytes(StandardCharsets.UTF_8);
+                connection.keyCommands().type(rawKey);
+                connection.execute("MEMORY", "USAGE".getBytes(StandardCharsets.UTF_8), rawKey);
+            }
+            return null;
+        });
+        for (int i = 0; i < keys.size(); i++) {
+            String key = keys.get(i);
+            String prefix = prefixOf(key, prefixes);
+            Object bytes = results.get(2 * i + 1);
+            if (prefix == null || !(bytes instanceof Number)) {
+                continue;
+            }
+            BigKeySample.BigKey bigKey = new BigKeySample.BigKey();
+            bigKey.setKey(key);
+            Object type = results.get(2 * i);
+            bigKey.setType(type instanceof DataType ? ((DataType) type).code() : String.valueOf(type));
+            bigKey.setBytes(((Number) bytes).longValue());
+            BigKeySample sample = samples.get(prefix);
+            sample.setSampled(sample.getSampled() + 1);
+            sample.setTotalBytes(sample.getTotalBytes() + bigKey.getBytes());
+            PriorityQueue<BigKeySample.BigKey> queue = tops.get(prefix);
+            queue.offer(bigKey);
+            if (queue.size() > topN) {
+                queue.poll();
+            }
+        }
+    }
+
+    /**
+     * 分批删除前缀下的所有 key
+     */
+    private void invalidate(CacheCleanupProgress progress) {
+        CacheProperties.Maintenance config = cacheProperties.getMaintenance();
+        String keyPrefix = progress.getKeyPrefix();
+        long interval = 1000L / Math.max(1, config.getBatchesPerSecond());
+        log.info("开始按前缀删除 key，keyPrefix: {}", keyPrefix);
+        try (Cursor<String> cursor = stringRedisTemplate.scan(ScanOptions.scanOptions()
+                .match(escape(keyPrefix) + "*")
+                .count(config.getScanBatchSize())
+                .build())) {
+            List<String> batch = new ArrayList<>(config.getScanBatchSize());
+            while (cursor.hasNext()) {
+                batch.add(cursor.next());
+                progress.getScanned().incrementAndGet();
+                if (batch.size() >= config.getScanBatchSize()) {
+                    unlink(batch, progress);
+                    batch = new ArrayList<>(config.getScanBatchSize());
+                    //限速，给正常请求留出 Redis 的处理能力
+                    Thread.sleep(interval);
+                }
+            }
+            if (!batch.isEmpty()) {
+                unlink(batch, progress);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            progress.setError("删除被中断");
+        } catch (Exception e) {
+            log.error("按前缀删除 key 失败，keyPrefix: {}", keyPrefix, e);
+            progress.setError(e.getMessage());
+        } finally {
+            progress.setEndTime(LocalDateTime.now());
+            progress.setRunning(false);
+        }
+        log.info("按前缀删除 key 结束，keyPrefix: {}，遍历 {} 个，删除 {} 个",
+                keyPrefix, progress.getScanned().get(), progress.getDeleted().get());
+    }
+
+    /**
+     * 删除一批 key：缓存数据通过 CacheClient 删除，同时更新版本号并清除各节点本地缓存；其他 key 直接 UNLINK
+     */
+    private void unlink(List<String> keys, CacheCleanupProgress progress) {
+        List<String> cacheKeys = new ArrayList<>();
+        List<String> plainKeys = new ArrayList<>();
+        for (String key : keys) {
+            if (key.startsWith(CACHE_FAMILY) && !key.startsWith(CACHE_VERSION_KEY)) {
+                cacheKeys.add(key);
+            } else {
+                plainKeys.add(key);
+            }
+        }
+        if (!cacheKeys.isEmpty()) {
+            cacheClient.deleteAll(cacheKeys);
+        }
+        if (!plainKeys.isEmpty()) {
+            stringRedisTemplate.unlink(plainKeys);
+        }
+        progress.getDeleted().addAndGet(keys.size());
+    }
+
+    /**
+     * 登记一次删除，同一个前缀同时只能有一次删除
+     * @return 删除进度，已经在删除时返回 null
+     */
+    private CacheCleanupProgress start(String keyPrefix) {
+        CacheCleanupProgress progress = new CacheCleanupProgress();
+        progress.setKeyPrefix(keyPrefix);
+        progress.setRunning(true);
+        progress.setStartTime(LocalDateTime.now());
+        CacheCleanupProgress old = progressMap.get(keyPrefix);
+        if (old != null && old.isRunning()) {
+            return null;
+        }
+        boolean registered = old == null
+                ? progressMap.putIfAbsent(keyPrefix, progress) == null
+                : progressMap.replace(keyPrefix, old, progress);
+        return registered ? progress : null;
+    }
+
+    /**
+     * RedisConstants 中以冒号结尾的 key 前缀，长的在前，便于按最长前缀匹配
+     */
+    private static List<String> prefixes() {
+        List<String> prefixes = new ArrayList<>();
+        for (Field field : RedisConstants.class.getFields()) {
+            if (!Modifier.isStatic(field.getModifiers()) || field.getType() != String.class) {
+                continue;
+            }
+            try {
+                String value = (String) field.get(null);
+                if (value.endsWith(":")) {
+                    prefixes.add(value);
+                }
+            } catch (IllegalAccessException ignored) {
+            }
+        }
+        prefixes.sort(Comparator.comparingInt(String::length).reversed());
+        return prefixes;
+    }
+
+    /**
+     * 是否可以删除的 key 或前缀：
+     * 1.不能是业务数据，也不能是包含业务数据的更短前缀
+     * 2.在 cache: 下且不是整个 cache: 空间，或者在配置允许的前缀下
+     */
+    private boolean isDeletable(String key) {
+        for (String prefix : PROTECTED_PREFIXES) {
+            if (key.startsWith(prefix) || prefix.startsWith(key)) {
+                return false;
+            }
+        }
+        if (key.startsWith(CACHE_FAMILY) && key.length() > CACHE_FAMILY.length()) {
+            return true;
+        }
+        return cacheProperties.getMaintenance().getAllowedPrefixes().stream()
+                .anyMatch(prefix -> !prefix.isEmpty() && key.startsWith(prefix));
+    }
+
+    private static String prefixOf(String key, List<String> prefixes) {
+        for (String prefix : prefixes) {
+            if (key.startsWith(prefix)) {
+                return prefix;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 转义 SCAN MATCH 中的通配符
+     */
+    private static String escape(String prefix) {
+        return prefix.replaceAll("([*?\\[\\]\\\\])", "\\\\$1");
+    }
+}
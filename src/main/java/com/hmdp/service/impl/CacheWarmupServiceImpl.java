@@ -0,0 +1,222 @@
+package com.hmdp.service.impl;
+
+import com.hmdp.config.CacheProperties;
+import com.hmdp.dto.CacheWarmupProgress;
+import com.hmdp.dto.Result;
+import com.hmdp.entity.Shop;
+import com.hmdp.mapper.ShopMapper;
+import com.hmdp.service.ICacheWarmupService;
+import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.CacheStrategy;
+import com.hmdp.utils.CacheStrategyRegistry;
+import com.hmdp.utils.HmdpCached;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cursor.Cursor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.ReflectionUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_KEY;
+
+/**
+ * 缓存预热服务实现类
+ * 使用 MyBatis 游标流式读取数据库中的 id，按批次回源，再用 pipeline 写入缓存，
+ * 写入格式取决于该前缀当前的查询策略：逻辑过期策略按版本号写入逻辑过期数据，预热期间被更新过的数据不会被旧数据覆盖；
+ * 穿透、互斥锁策略写入带有过期时间的数据，启用哈希桶存储时写入桶中，
+ * 同时写入的批次数受 parallelism 限制，读取速度超过写入速度时游标会等待，内存占用有上限
+ * @author Ace
+ */
+@Slf4j
+@Service
+public class CacheWarmupServiceImpl implements ICacheWarmupService {
+
+    @Resource
+    private ShopMapper shopMapper;
+
+    @Resource
+    private CacheClient cacheClient;
+
+    @Resource
+    private CacheProperties cacheProperties;
+
+    @Resource
+    private CacheStrategyRegistry cacheStrategyRegistry;
+
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * 执行预热任务的线程，容器关闭时中断正在进行的预热
+     */
+    private final ExecutorService warmupExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * 各缓存前缀最近一次预热的进度
+     */
+    private final Map<String, CacheWarmupProgress> progressMap = new ConcurrentHashMap<>();
+
+    /**
+     * 启动完成后自动预热
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmupOnStartup() {
+        if (cacheProperties.getWarmup().isOnStartup()) {
+            warmupShop();
+        }
+    }
+
+    @Override
+    public Result warmupShop() {
+        CacheWarmupProgress progress = start(CACHE_SHOP_KEY);
+        if (progress == null) {
+            return Result.fail("预热正在进行中");
+        }
+        //缓存时间和默认策略以查询方法上的 @HmdpCached 为准
+        HmdpCached cached = AnnotationUtils.findAnnotation(
+                ReflectionUtils.findMethod(ShopServiceImpl.class, "queryById", Long.class), HmdpCached.class);
+        Function<List<Long>, Map<Long, Shop>> dbBatchFallback =
+                ids -> shopMapper.selectByIds(ids).stream().collect(Collectors.toMap(Shop::getId, shop -> shop));
+        warmupExecutor.submit(() -> warmup(progress, shopMapper::scanAllIds, cached, dbBatchFallback));
+        return Result.ok(progress);
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        warmupExecutor.shutdownNow();
+    }
+
+    @Override
+    public Result queryProgress() {
+        return Result.ok(progressMap.values());
+    }
+
+    /**
+     * 登记一次预热，同一个前缀同时只能有一次预热
+     * @return 预热进度，已经在预热时返回 null
+     */
+    private CacheWarmupProgress start(String keyPrefix) {
+        CacheWarmupProgress progress = new CacheWarmupProgress();
+        progress.setKeyPrefix(keyPrefix);
+        progress.setRunning(true);
+        progress.setStartTime(LocalDateTime.now());
+        CacheWarmupProgress old = progressMap.get(keyPrefix);
+        if (old != null && old.isRunning()) {
+            return null;
+        }
+        boolean registered = old == null
+                ? progressMap.putIfAbsent(keyPrefix, progress) == null
+                : progressMap.replace(keyPrefix, old, progress);
+        return registered ? progress : null;
+    }
+
+    /**
+     * 流式读取 id 并分批写入
+     * @param progress 预热进度
+     * @param cursorSupplier 打开 id 游标
+     * @param cached 查询方法上的注解，提供默认策略和缓存时间
+     * @param dbBatchFallback 按 id 批量回源
+     * @param <R> 数据类型
+     * @param <ID> id 类型
+     */
+    private <R, ID> void warmup(
+            CacheWarmupProgress progress,
+            Supplier<Cursor<ID>> cursorSupplier,
+            HmdpCached cached,
+            Function<List<ID>, Map<ID, R>> dbBatchFallback) {
+        //按当前生效的策略选择写入格式，与 CacheAspect 查询时使用的格式一致
+        CacheStrategy strategy = cacheStrategyRegistry.resolve(progress.getKeyPrefix(), cached.strategy());
+        progress.setStrategy(strategy.name());
+        Function<List<ID>, Integer> writer = strategy == CacheStrategy.LOGICAL_EXPIRE
+                ? ids -> cacheClient.setWithLogicalExpireBatch(progress.getKeyPrefix(), ids, dbBatchFallback, cached.ttl(), cached.unit())
+                : ids -> cacheClient.setBatch(progress.getKeyPrefix(), ids, dbBatchFallback, cached.ttl(), cached.unit());
+        CacheProperties.Warmup config = cacheProperties.getWarmup();
+        int parallelism = config.getParallelism();
+        ExecutorService writers = Executors.newFixedThreadPool(parallelism);
+        Semaphore permits = new Semaphore(parallelism);
+        log.info("开始预热缓存，keyPrefix: {}，strategy: {}", progress.getKeyPrefix(), strategy);
+        try {
+            //游标需要在事务中遍历，遍历结束前连接不会归还连接池
+            transactionTemplate.executeWithoutResult(status -> {
+                try (Cursor<ID> cursor = cursorSupplier.get()) {
+                    List<ID> batch = new ArrayList<>(config.getBatchSize());
+                    for (ID id : cursor) {
+                        batch.add(id);
+                        if (batch.size() >= config.getBatchSize()) {
+                            submitBatch(writers, permits, batch, writer, progress);
+                            batch = new ArrayList<>(config.getBatchSize());
+                        }
+                    }
+                    if (!batch.isEmpty()) {
+                        submitBatch(writers, permits, batch, writer, progress);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            //等待所有批次写完
+            permits.acquire(parallelism);
+            permits.release(parallelism);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("缓存预热被中断，keyPrefix: {}", progress.getKeyPrefix());
+        } catch (Exception e) {
+            log.error("缓存预热失败，keyPrefix: {}", progress.getKeyPrefix(), e);
+        } finally {
+            writers.shutdown();
+            progress.setEndTime(LocalDateTime.now());
+            progress.setRunning(false);
+        }
+        log.info("缓存预热结束，keyPrefix: {}，写入 {} 条，失败 {} 条，耗时 {} ms",
+                progress.getKeyPrefix(), progress.getWritten().get(), progress.getFailed().get(),
+                Duration.between(progress.getStartTime(), progress.getEndTime()).toMillis());
+    }
+
+    /**
+     * 提交一个批次，正在写入的批次数达到上限时阻塞等待
+     */
+    private <ID> void submitBatch(
+            ExecutorService writers,
+            Semaphore permits,
+            List<ID> batch,
+            Function<List<ID>, Integer> writer,
+            CacheWarmupProgress progress) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("缓存预热被中断", e);
+        }
+        writers.execute(() -> {
+            try {
+                int count = writer.apply(batch);
+                long written = progress.getWritten().addAndGet(count);
+                log.debug("缓存预热进度，keyPrefix: {}，已写入 {} 条", progress.getKeyPrefix(), written);
+            } catch (Exception e) {
+                progress.getFailed().addAndGet(batch.size());
+                log.error("缓存预热批次写入失败，keyPrefix: {}", progress.getKeyPrefix(), e);
+            } finally {
+                permits.release();
+            }
+        });
+    }
+}
@@ -1,6 +1,5 @@
 package com.hmdp.service.impl;
     
-import cn.hutool.core.bean.BeanUtil;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.hmdp.dto.Result;
 import com.hmdp.dto.UserDTO;
@@ -100,10 +99,7 @@ public class FollowServiceImpl extends ServiceImpl<FollowMapper, Follow> impleme
             return Result.ok(Collections.emptyList());
         }
         List<Long> ids = intersect.stream().map(Long::valueOf).collect(Collectors.toList());
-        List<UserDTO> users = userService.listByIds(ids)
-                .stream().
-                map(user -> BeanUtil.copyProperties(user, UserDTO.class))
-                .collect(Collectors.toList());
+        List<UserDTO> users = userService.queryUserDTOsByIds(ids);
         return Result.ok(users);
     }
 }
@@ -1,13 +1,17 @@
 package com.hmdp.service.impl;
 
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.hmdp.dto.Result;
-import cn.hutool.core.util.StrUtil;
+import cn.hutool.core.bean.BeanUtil;
 import com.hmdp.entity.Shop;
 import com.hmdp.mapper.ShopMapper;
 import com.hmdp.service.IShopService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.HmdpCacheEvict;
+import com.hmdp.utils.HmdpCached;
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
 import org.springframework.data.geo.Distance;
 import org.springframework.data.geo.GeoResult;
@@ -22,6 +26,7 @@ import org.springframework.data.redis.connection.RedisGeoCommands.GeoLocation;
 
 import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static com.hmdp.utils.RedisConstants.*;
 import static com.hmdp.utils.SystemConstants.DEFAULT_PAGE_SIZE;
@@ -42,21 +47,25 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
     @Resource
     private CacheClient cacheClient;
 
+    /**
+     * 启动时用数据库中已有的商铺id构建布隆过滤器
+     */
+    @PostConstruct
+    private void initBloomFilter() {
+        cacheClient.initBloomFilter(CACHE_SHOP_KEY,
+                () -> listObjs(new QueryWrapper<Shop>().select("id")));
+    }
 
     /**
      * 根据商铺id查询商铺信息
+     * 默认缓存空值解决缓存穿透，可以通过 hmdp.cache.strategy 或 PUT /cache/strategy 切换为互斥锁或逻辑过期
      * @param id 商铺id
      * @return
      */
     @Override
+    @HmdpCached(prefix = CACHE_SHOP_KEY, type = Shop.class, nullMessage = "商铺不存在")
     public Result queryById(Long id) {
-        //用缓存空值解决缓存穿透
-        Shop shop = cacheClient.queryWithPassThrough(CACHE_SHOP_KEY, id, Shop.class, this::getById, CACHE_SHOP_TTL, TimeUnit.MINUTES);
-        //逻辑过期解决缓存击穿
-        //Type type = new TypeReference<RedisData<Shop>>(){}.getType();
-        //Shop shop = cacheClient.queryWithLogicalExpire(CACHE_SHOP_KEY, id, type, this::getById, 20L, TimeUnit.SECONDS);
-        //互斥锁解决缓存击穿
-        //Shop shop = cacheClient.queryWithMutex(CACHE_SHOP_KEY, id, Shop.class, this::getById, CACHE_SHOP_TTL, TimeUnit.MINUTES);
+        Shop shop = getById(id);
         if(shop == null){
             //如果商铺信息不存在，返回错误信息
             return Result.fail("商铺不存在");
@@ -64,6 +73,20 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
         return Result.ok(shop);
     }
 
+    /**
+     * 新增商铺信息
+     * @param shop 商铺数据
+     * @return 商铺id
+     */
+    @Override
+    public Result saveShop(Shop shop) {
+        //1.写入数据库
+        save(shop);
+        //2.加入布隆过滤器，避免新商铺被误判为不存在
+        cacheClient.addToBloomFilter(CACHE_SHOP_KEY, shop.getId());
+        return Result.ok(shop.getId());
+    }
+
     /**
      * 更新商铺信息
      * @param shop
@@ -71,6 +94,7 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
      */
     @Transactional
     @Override
+    @HmdpCacheEvict(prefix = CACHE_SHOP_KEY, key = "#shop.id")
     public Result update(Shop shop) {
         Long id = shop.getId();
         if (id == null) {
@@ -78,10 +102,7 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
         }
         //1.先更新数据库
         updateById(shop);
-        //2.删除缓存
-        String key = CACHE_SHOP_KEY + id;
-        stringRedisTemplate.delete(key);
-        log.debug("删除缓存");
+        //2.事务提交后由 @HmdpCacheEvict 删除缓存，同时通知各节点清除本地缓存
         return Result.ok();
     }
 
@@ -128,12 +149,16 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
             Distance distance = result.getDistance();
             distanceMap.put(shopId, distance);
         });
-        //5.根据id查询商铺信息
-        String idStr = StrUtil.join(",", ids);
-        List<Shop> shops = query().in("id", ids).last("ORDER BY FIELD(id, " + idStr + ")").list();
-        //6.店铺，设置距离
-        for (Shop shop : shops) {
+        //5.根据id批量查询商铺信息，一次 MGET，未命中的合并为一次 IN 查询
+        List<Shop> cachedShops = cacheClient.queryBatchWithPassThrough(CACHE_SHOP_KEY, ids, Shop.class,
+                missIds -> listByIds(missIds).stream().collect(Collectors.toMap(Shop::getId, shop -> shop)),
+                CACHE_SHOP_TTL, TimeUnit.MINUTES);
+        //6.店铺，设置距离（缓存中的对象可能被本地缓存共享，复制后再修改）
+        List<Shop> shops = new ArrayList<>(cachedShops.size());
+        for (Shop cached : cachedShops) {
+            Shop shop = BeanUtil.copyProperties(cached, Shop.class);
             shop.setDistance(distanceMap.get(shop.getId().toString()).getValue());
+            shops.add(shop);
         }
         return Result.ok(shops);
     }
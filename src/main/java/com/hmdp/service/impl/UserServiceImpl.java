@@ -11,6 +11,8 @@ import com.hmdp.dto.UserDTO;
 import com.hmdp.entity.User;
 import com.hmdp.mapper.UserMapper;
 import com.hmdp.service.IUserService;
+import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.HmdpCached;
 import com.hmdp.utils.RegexUtils;
 import com.hmdp.utils.UserHolder;
 import jakarta.annotation.Resource;
@@ -26,6 +28,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static com.hmdp.utils.RedisConstants.*;
 import static com.hmdp.utils.SystemConstants.USER_NICK_NAME_PREFIX;
@@ -42,6 +45,9 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements IU
     @Resource
     private StringRedisTemplate stringRedisTemplate;
 
+    @Resource
+    private CacheClient cacheClient;
+
     @Override
     public Result sendCode(String phone, HttpSession session) {
         //1.校验手机号
@@ -112,6 +118,7 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements IU
      * @return 用户信息
      */
     @Override
+    @HmdpCached(prefix = CACHE_USER_KEY, type = UserDTO.class)
     public Result queryUserById(Long userId) {
         User user = getById(userId);
         if (user == null) {
@@ -183,6 +190,19 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements IU
         return Result.ok(count);
     }
 
+    /**
+     * 批量查询用户信息，一次 MGET + 一次 IN 查询
+     * @param ids 用户ID列表
+     * @return 用户信息，顺序与 ids 一致
+     */
+    @Override
+    public List<UserDTO> queryUserDTOsByIds(List<Long> ids) {
+        return cacheClient.queryBatchWithPassThrough(CACHE_USER_KEY, ids, UserDTO.class,
+                missIds -> listByIds(missIds).stream()
+                        .collect(Collectors.toMap(User::getId, user -> BeanUtil.copyProperties(user, UserDTO.class))),
+                CACHE_USER_TTL, TimeUnit.MINUTES);
+    }
+
     private User createUserWithPhone(String phone) {
         User user = new User();
         user.setPhone(phone);
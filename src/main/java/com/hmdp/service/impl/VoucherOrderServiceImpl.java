@@ -1,34 +1,67 @@
 package com.hmdp.service.impl;
 
 import cn.hutool.core.bean.BeanUtil;
+import com.hmdp.config.SeckillProperties;
 import com.hmdp.dto.Result;
+import com.hmdp.dto.SeckillOrderStatus;
+import com.hmdp.dto.SeckillTicket;
+import com.hmdp.entity.SeckillVoucher;
 import com.hmdp.entity.VoucherOrder;
 import com.hmdp.mapper.VoucherOrderMapper;
 import com.hmdp.service.ISeckillVoucherService;
 import com.hmdp.service.IVoucherOrderService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.utils.RedisCircuitBreaker;
 import com.hmdp.utils.RedisIdWorker;
+import com.hmdp.utils.SeckillAdmission;
+import com.hmdp.utils.SeckillLocalFilter;
+import com.hmdp.utils.SeckillOrderNotifier;
+import com.hmdp.utils.SeckillStockShards;
 import com.hmdp.utils.UserHolder;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
-import org.redisson.api.RLock;
+import org.redisson.api.AutoClaimResult;
+import org.redisson.api.RStream;
 import org.redisson.api.RedissonClient;
-import org.springframework.aop.framework.AopContext;
+import org.redisson.api.StreamMessageId;
+import org.redisson.client.RedisConnectionException;
+import org.redisson.client.RedisTimeoutException;
+import org.redisson.client.codec.StringCodec;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.Range;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.connection.stream.*;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.CannotCreateTransactionException;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 
 /**
@@ -50,6 +83,27 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
     @Resource
     private RedissonClient redissonClient;
 
+    @Resource
+    private RedisCircuitBreaker redisCircuitBreaker;
+
+    @Resource
+    private SeckillProperties seckillProperties;
+
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
+    @Resource
+    private SeckillStockShards seckillStockShards;
+
+    @Resource
+    private SeckillLocalFilter seckillLocalFilter;
+
+    @Resource
+    private SeckillAdmission seckillAdmission;
+
+    @Resource
+    private SeckillOrderNotifier seckillOrderNotifier;
+
     private static final DefaultRedisScript<Long> SECKILL_SCRIPT;
 
     static{
@@ -59,61 +113,234 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
         SECKILL_SCRIPT.setResultType(Long.class);
     }
 
-    private static final ExecutorService SECKILL_ORDER_EXECUTOR = Executors.newSingleThreadExecutor();
+    /**
+     * 订单队列的消费组
+     */
+    private static final String ORDER_GROUP = "g1";
+
+    private static final ScheduledExecutorService ORDER_RECOVERY_EXECUTOR = Executors.newSingleThreadScheduledExecutor();
+
+    private ExecutorService seckillOrderExecutor;
 
     private final String queueName = "stream.orders";
 
+    /**
+     * 多次处理仍然失败的订单消息，保留原消息内容、来源和失败原因，供人工排查
+     */
+    private final String deadLetterQueueName = "stream.orders.dead";
+
     @PostConstruct
     private void init(){
-        SECKILL_ORDER_EXECUTOR.submit(() -> {
-            while (true) {
-                try {
-                    //1. 获取消息队列中的订单信息 XREAD GROUP g1 c1 BLOCK 2000 STREAMS streams.orders >
-                    List<MapRecord<String, Object, Object>> list = stringRedisTemplate.opsForStream().read(
-                            //1.1 指定消费组和消费者
-                            Consumer.from("g1", "c1"),
-                            //1.2 设置读取选项：最多读取 1 条，阻塞最多 2 秒
-                            StreamReadOptions.empty().count(1).block(Duration.ofSeconds(2)),
-                            //1.3 指定从哪个 Stream 和偏移量读取（> 表示读取新消息）
-                            StreamOffset.create(queueName, ReadOffset.lastConsumed())
-                    );
-                    //2.判断消息获取是否成功
-                    if(list == null || list.isEmpty()){
-                        //2.1如果获取失败，说明没有消息，继续下一次循环
-                        continue;
-                    }
+        SeckillProperties.Consumer config = seckillProperties.getConsumer();
+        //1.创建消费组，stream 不存在时一并创建
+        for (int partition = 0; partition < config.getPartitions(); partition++) {
+            createGroup(streamKey(partition));
+        }
+        //2.每个线程一个消费者，负责一部分分区
+        seckillOrderExecutor = Executors.newFixedThreadPool(config.getThreads());
+        for (int thread = 0; thread < config.getThreads(); thread++) {
+            int index = thread;
+            seckillOrderExecutor.submit(() -> consume(index));
+        }
+        //3.定期认领其他消费者（已经宕机的节点或线程）长时间未确认的消息
+        long interval = config.getClaimInterval().toMillis();
+        ORDER_RECOVERY_EXECUTOR.scheduleWithFixedDelay(this::recoverIdleOrders, interval, interval, TimeUnit.MILLISECONDS);
+    }
 
+    /**
+     * 消费线程
+     * @param thread 线程编号
+     */
+    @SuppressWarnings("unchecked")
+    private void consume(int thread) {
+        Consumer consumer = Consumer.from(ORDER_GROUP, seckillProperties.getConsumer().getNodeId() + "-" + thread);
+        List<String> streamKeys = streamKeysOf(thread);
+        StreamOffset<String>[] offsets = streamKeys.stream()
+                .map(key -> StreamOffset.create(key, ReadOffset.lastConsumed()))
+                .toArray(StreamOffset[]::new);
+        log.info("订单消费者启动，consumer: {}，streams: {}", consumer.getName(), streamKeys);
+        //启动时先处理本消费者上次未确认的消息
+        handlePendingList(consumer, streamKeys);
+        while (true) {
+            try {
+                //0. 批量模式：一次读取一批订单，在一个事务中写入
+                if (seckillProperties.getConsumer().getBatchSize() > 1) {
+                    handleVoucherOrderBatch(consumer, offsets);
+                    continue;
+                }
+                //1. 获取消息队列中的订单信息 XREAD GROUP g1 consumer BLOCK 2000 STREAMS streams.orders >
+                List<MapRecord<String, Object, Object>> list = stringRedisTemplate.opsForStream().read(
+                        //1.1 指定消费组和消费者
+                        consumer,
+                        //1.2 设置读取选项：每个 stream 最多读取 1 条，阻塞最多 2 秒
+                        StreamReadOptions.empty().count(1).block(Duration.ofSeconds(2)),
+                        //1.3 指定从哪些 Stream 和偏移量读取（> 表示读取新消息）
+                        offsets
+                );
+                //2.判断消息获取是否成功
+                if(list == null || list.isEmpty()){
+                    //2.1如果获取失败，说明没有消息，继续下一次循环
+                    continue;
+                }
+                for (MapRecord<String, Object, Object> record : list) {
                     //3.1解析消息中的订单信息
-                    MapRecord<String, Object, Object> record = list.get(0);
                     Map<Object, Object> values = record.getValue();
                     VoucherOrder voucherOrder = BeanUtil.fillBeanWithMap(values, new VoucherOrder(), true);
                     //3.2如果获取成功，可以下单
-                    handleVoucherOrder(voucherOrder);
+                    createVoucherOrders(List.of(voucherOrder));
                     //4.ACK确认 SACK stream.orders g1 id
-                    stringRedisTemplate.opsForStream().acknowledge(queueName,"g1",record.getId());
+                    stringRedisTemplate.opsForStream().acknowledge(record.getStream(), ORDER_GROUP, record.getId());
+                }
+            } catch (Exception e) {
+                log.error("处理订单异常", e);
+                //没有被ack确认，在pendingList中处理异常消息
+                handlePendingList(consumer, streamKeys);
+            }
+        }
+    }
 
-                } catch (Exception e) {
-                    log.error("处理订单异常", e);
-                    //没有被ack确认，在pendingList中处理异常消息
-                    handlePendingList();
+    /**
+     * 批量处理订单：读取一批消息，一个事务写入，按 stream 各一次 XACK 确认
+     * 失败时消息留在 pendingList 中，由 handlePendingList 逐条处理，单条异常消息不会阻塞整批
+     */
+    private void handleVoucherOrderBatch(Consumer consumer, StreamOffset<String>[] offsets) {
+        //1.读取一批订单
+        List<MapRecord<String, Object, Object>> records = readOrderBatch(consumer, offsets);
+        if (records.isEmpty()) {
+            return;
+        }
+        //2.解析订单信息
+        List<VoucherOrder> voucherOrders = new ArrayList<>(records.size());
+        for (MapRecord<String, Object, Object> record : records) {
+            voucherOrders.add(BeanUtil.fillBeanWithMap(record.getValue(), new VoucherOrder(), true));
+        }
+        //3.一个事务写入所有订单
+        createVoucherOrders(voucherOrders);
+        //4.每个 stream 一次 ACK 确认所有消息 XACK stream.orders g1 id1 id2 ...
+        records.stream()
+                .collect(Collectors.groupingBy(MapRecord::getStream,
+                        Collectors.mapping(MapRecord::getId, Collectors.toList())))
+                .forEach((stream, ids) -> stringRedisTemplate.opsForStream()
+                        .acknowledge(stream, ORDER_GROUP, ids.toArray(RecordId[]::new)));
+    }
+
+    /**
+     * 读取一批订单，读到第一条之后最多再等待 linger 凑满 batchSize 条
+     * @return 没有新订单时返回空列表
+     */
+    private List<MapRecord<String, Object, Object>> readOrderBatch(Consumer consumer, StreamOffset<String>[] offsets) {
+        SeckillProperties.Consumer config = seckillProperties.getConsumer();
+        List<MapRecord<String, Object, Object>> records = new ArrayList<>(config.getBatchSize());
+        long deadline = 0;
+        while (records.size() < config.getBatchSize()) {
+            Duration block;
+            if (records.isEmpty()) {
+                block = Duration.ofSeconds(2);
+            } else {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    break;
                 }
+                block = Duration.ofMillis(remaining);
+            }
+            //XREADGROUP GROUP g1 consumer COUNT n BLOCK ms STREAMS stream.orders >，COUNT 对每个 stream 分别生效
+            List<MapRecord<String, Object, Object>> list = stringRedisTemplate.opsForStream().read(
+                    consumer,
+                    StreamReadOptions.empty().count(config.getBatchSize() - records.size()).block(block),
+                    offsets
+            );
+            if (list == null || list.isEmpty()) {
+                break;
+            }
+            if (records.isEmpty()) {
+                deadline = System.currentTimeMillis() + config.getLinger().toMillis();
             }
+            records.addAll(list);
+        }
+        return records;
+    }
+
+    /**
+     * 在一个事务中写入一批订单：每张优惠券一条 INSERT IGNORE 写入订单，再按实际写入的行数扣减库存
+     * 资格（库存、一人一单）已经由 seckill.lua 在 Redis 中校验；重复投递的消息（写入成功但 ACK 失败）
+     * 和重复下单由主键、唯一索引 (user_id, voucher_id) 忽略，不会重复扣减库存
+     * @param voucherOrders 订单
+     */
+    private void createVoucherOrders(List<VoucherOrder> voucherOrders) {
+        int inserted = transactionTemplate.execute(status -> {
+            int total = 0;
+            //1.按优惠券分组
+            Map<Long, List<VoucherOrder>> groups = voucherOrders.stream()
+                    .collect(Collectors.groupingBy(VoucherOrder::getVoucherId));
+            for (Map.Entry<Long, List<VoucherOrder>> group : groups.entrySet()) {
+                //2.一条 INSERT IGNORE 写入该优惠券的订单，已存在的订单被忽略
+                int count = getBaseMapper().insertBatch(group.getValue());
+                if (count == 0) {
+                    continue;
+                }
+                //3.按实际写入的行数扣减库存
+                boolean success = seckillVoucherService.lambdaUpdate()
+                        .setSql("stock = stock - {0}", count)
+                        .eq(SeckillVoucher::getVoucherId, group.getKey())
+                        .ge(SeckillVoucher::getStock, count)
+                        .update();
+                if (!success) {
+                    //回滚整批，交给 pendingList 逐条处理
+                    throw new IllegalStateException("库存不足，voucherId: " + group.getKey());
+                }
+                total += count;
+            }
+            return total;
         });
+        if (inserted < voucherOrders.size()) {
+            log.info("忽略重复订单 {} 条", voucherOrders.size() - inserted);
+        }
+        log.debug("批量写入订单 {} 条", inserted);
+        notifyOrderStatus(voucherOrders, inserted);
+    }
 
+    /**
+     * 通知客户端订单的处理结果，通知失败不影响消息确认
+     * @param inserted 本次实际写入的订单数，少于订单数时按订单 id 查询哪些已经写入（包括之前投递时写入的）
+     */
+    private void notifyOrderStatus(List<VoucherOrder> voucherOrders, int inserted) {
+        try {
+            if (inserted == voucherOrders.size()) {
+                seckillOrderNotifier.publish(voucherOrders, Collections.emptyList());
+                return;
+            }
+            List<Long> ids = voucherOrders.stream().map(VoucherOrder::getId).collect(Collectors.toList());
+            Set<Long> persisted = query().select("id").in("id", ids).list().stream()
+                    .map(VoucherOrder::getId)
+                    .collect(Collectors.toSet());
+            Map<Boolean, List<VoucherOrder>> partitions = voucherOrders.stream()
+                    .collect(Collectors.partitioningBy(order -> persisted.contains(order.getId())));
+            seckillOrderNotifier.publish(partitions.get(true), partitions.get(false));
+        } catch (Exception e) {
+            log.warn("发送订单结果通知失败", e);
+        }
     }
 
-    private void handlePendingList() {
+    private void handlePendingList(Consumer consumer, List<String> streamKeys) {
+        for (String streamKey : streamKeys) {
+            handlePendingList(consumer, streamKey);
+        }
+    }
 
+    private void handlePendingList(Consumer consumer, String streamKey) {
+        //连续失败的次数，用于计算重试前等待的时间
+        int attempts = 0;
         while (true) {
+            MapRecord<String, Object, Object> record = null;
             try {
-                //1. 获取pendingList中的订单信息 XREAD GROUP g1 c1 STREAMS streams.orders 0
+                //1. 获取pendingList中的订单信息 XREAD GROUP g1 consumer STREAMS streams.orders 0
                 List<MapRecord<String, Object, Object>> list = stringRedisTemplate.opsForStream().read(
                         //1.1 指定消费组和消费者
-                        Consumer.from("g1", "c1"),
+                        consumer,
                         //1.2 设置读取选项：最多读取 1 条，不阻塞
                         StreamReadOptions.empty().count(1),
                         //1.3 指定从哪个 Stream 和偏移量读取（0 表示读取pendingList中的消息）
-                        StreamOffset.create(queueName, ReadOffset.from("0"))
+                        StreamOffset.create(streamKey, ReadOffset.from("0"))
                 );
                 //2.判断消息获取是否成功
                 if(list == null || list.isEmpty()){
@@ -122,97 +349,421 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
                 }
 
                 //3.1解析pendingList中的订单信息
-                MapRecord<String, Object, Object> record = list.get(0);
+                record = list.get(0);
                 Map<Object, Object> values = record.getValue();
                 VoucherOrder voucherOrder = BeanUtil.fillBeanWithMap(values, new VoucherOrder(), true);
                 //3.2如果获取成功，可以下单
-                handleVoucherOrder(voucherOrder);
+                createVoucherOrders(List.of(voucherOrder));
                 //4.ACK确认 SACK stream.orders g1 id
-                stringRedisTemplate.opsForStream().acknowledge(queueName,"g1",record.getId());
+                stringRedisTemplate.opsForStream().acknowledge(streamKey, ORDER_GROUP, record.getId());
+                attempts = 0;
 
             } catch (Exception e) {
                 log.error("处理pendingList订单异常", e);
-                try {
-                    Thread.sleep(20);
-                } catch (InterruptedException ex) {
-                    ex.printStackTrace();
+                //5.数据库、Redis 暂时不可用时一直重试；其他异常计入投递次数，达到上限后移到死信队列，让后面的消息继续处理
+                if (record != null && !isTransient(e)
+                        && redeliver(streamKey, consumer, record.getId()) >= seckillProperties.getConsumer().getMaxDeliveries()) {
+                    deadLetter(streamKey, record.getId(), record.getValue(), e);
+                    attempts = 0;
+                    continue;
+                }
+                //6.等待后重试，等待时间按连续失败的次数指数增长
+                if (!backoff(attempts++)) {
+                    return;
                 }
             }
         }
     }
 
+    /**
+     * 把消息重新认领给自己 XCLAIM stream.orders g1 consumer 0 id，投递次数加一
+     * pendingList 总是从第一条开始读（XREADGROUP 0），不会增加投递次数
+     * @return 认领后的投递次数
+     */
+    private long redeliver(String streamKey, Consumer consumer, RecordId recordId) {
+        try {
+            stringRedisTemplate.opsForStream().claim(streamKey, ORDER_GROUP, consumer.getName(), Duration.ZERO, recordId);
+        } catch (Exception e) {
+            log.error("认领订单消息失败，stream: {}，id: {}", streamKey, recordId, e);
+        }
+        return deliveryCount(streamKey, recordId);
+    }
 
-    private void handleVoucherOrder(VoucherOrder voucherOrder) {
-        //1.获取用户
-        Long userId = voucherOrder.getUserId();
-        //2.创建锁对象
-        RLock lock = redissonClient.getLock("lock:order:" + userId);
-        //3.获取锁
-        boolean isLock = lock.tryLock();
-        //4.判断是否获取锁成功
-        if (!isLock) {
-            //获取锁失败，返回错误信息
-            log.error("禁止重复下单，userId: {}", userId);
+    /**
+     * 重试前等待 retryBackoff * 2^attempt，最多等待 maxRetryBackoff
+     * @return 被中断时返回 false
+     */
+    private boolean backoff(int attempt) {
+        SeckillProperties.Consumer config = seckillProperties.getConsumer();
+        long delay = Math.min(config.getMaxRetryBackoff().toMillis(),
+                config.getRetryBackoff().toMillis() << Math.min(attempt, 20));
+        try {
+            Thread.sleep(delay);
+            return true;
+        } catch (InterruptedException ex) {
+            log.error("处理pendingList订单被中断", ex);
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * 是否是数据库、Redis 暂时不可用导致的异常，沿着 cause 链判断；这类异常恢复后可以处理成功，不移到死信队列
+     */
+    private static boolean isTransient(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TransientDataAccessException
+                    || cause instanceof RecoverableDataAccessException
+                    || cause instanceof DataAccessResourceFailureException
+                    || cause instanceof CannotCreateTransactionException
+                    || cause instanceof SQLTransientException
+                    || cause instanceof SQLRecoverableException
+                    || cause instanceof RedisConnectionException
+                    || cause instanceof RedisTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 认领空闲超过 claimIdle 的消息（消费者所在节点宕机或线程退出后留下的），处理后确认；
+     * 同时删除没有未确认消息、空闲超过 consumerExpire 的消费者
+     */
+    private void recoverIdleOrders() {
+        SeckillProperties.Consumer config = seckillProperties.getConsumer();
+        String claimer = config.getNodeId() + "-recovery";
+        for (int partition = 0; partition < config.getPartitions(); partition++) {
+            String streamKey = streamKey(partition);
+            try {
+                RStream<String, String> stream = redissonClient.getStream(streamKey, StringCodec.INSTANCE);
+                StreamMessageId start = new StreamMessageId(0, 0);
+                do {
+                    //XAUTOCLAIM stream.orders g1 claimer idle start COUNT n
+                    AutoClaimResult<String, String> result = stream.autoClaim(ORDER_GROUP, claimer,
+                            config.getClaimIdle().toMillis(), TimeUnit.MILLISECONDS, start, config.getBatchSize());
+                    result.getMessages().forEach((id, values) -> recoverOrder(streamKey, id.toString(), values));
+                    start = result.getNextId();
+                } while (start != null && !(start.getId0() == 0 && start.getId1() == 0));
+                removeIdleConsumers(streamKey, config.getConsumerExpire());
+            } catch (Exception e) {
+                log.error("认领空闲订单消息失败，stream: {}", streamKey, e);
+            }
         }
+    }
+
+    /**
+     * 处理一条认领到的消息，失败时留在认领者的 pendingList 中，空闲超时后会被再次认领
+     */
+    private void recoverOrder(String streamKey, String recordId, Map<String, String> values) {
         try {
-            proxy.createVoucherOrder(voucherOrder);
-        } finally {
-            //释放锁
-            lock.unlock();
+            VoucherOrder voucherOrder = BeanUtil.fillBeanWithMap(values, new VoucherOrder(), true);
+            createVoucherOrders(List.of(voucherOrder));
+            stringRedisTemplate.opsForStream().acknowledge(streamKey, ORDER_GROUP, RecordId.of(recordId));
+            log.info("认领并处理空闲订单消息，stream: {}，id: {}", streamKey, recordId);
+        } catch (Exception e) {
+            log.error("处理认领的订单消息失败，stream: {}，id: {}", streamKey, recordId, e);
+            //每次认领都会增加投递次数，数据库、Redis 暂时不可用时不移到死信队列，其他异常达到上限后移到死信队列
+            if (!isTransient(e)
+                    && deliveryCount(streamKey, RecordId.of(recordId)) >= seckillProperties.getConsumer().getMaxDeliveries()) {
+                deadLetter(streamKey, RecordId.of(recordId), values, e);
+            }
+        }
+    }
+
+    /**
+     * 消息的投递次数 XPENDING stream.orders g1 id id 1，读取 pendingList（XREADGROUP 0）不会增加投递次数
+     * @return 查询失败或消息已确认时返回 1
+     */
+    private long deliveryCount(String streamKey, RecordId recordId) {
+        try {
+            PendingMessages pending = stringRedisTemplate.opsForStream().pending(streamKey, ORDER_GROUP,
+                    Range.closed(recordId.getValue(), recordId.getValue()), 1);
+            return pending.isEmpty() ? 1 : Math.max(1, pending.get(0).getTotalDeliveryCount());
+        } catch (Exception e) {
+            log.error("查询订单消息投递次数失败，stream: {}，id: {}", streamKey, recordId, e);
+            return 1;
         }
+    }
 
+    /**
+     * 把多次处理失败的订单消息移到死信队列，归还 Redis 中的库存和下单资格，再确认，之后不再重试；通知等待结果的客户端订单失败
+     * 中途失败时消息仍未确认，之后会再次移到死信队列，归还库存是幂等的
+     */
+    private void deadLetter(String streamKey, RecordId recordId, Map<?, ?> values, Exception cause) {
+        try {
+            Map<String, String> deadValues = new HashMap<>();
+            values.forEach((k, v) -> deadValues.put(k.toString(), String.valueOf(v)));
+            deadValues.put("stream", streamKey);
+            deadValues.put("recordId", recordId.getValue());
+            deadValues.put("error", String.valueOf(cause.getMessage()));
+            //1.XADD stream.orders.dead * ...
+            stringRedisTemplate.opsForStream().add(StreamRecords.newRecord().in(deadLetterQueueName).ofMap(deadValues));
+            //2.归还库存，库存分片的消息带有扣减库存的分片
+            Long voucherId = Long.valueOf(deadValues.get("voucherId"));
+            String shard = deadValues.get("shard");
+            if (seckillStockShards.compensate(voucherId, Long.valueOf(deadValues.get("userId")),
+                    shard == null ? null : Integer.valueOf(shard))) {
+                seckillLocalFilter.markRestocked(voucherId);
+            }
+            //3.XACK stream.orders g1 id
+            stringRedisTemplate.opsForStream().acknowledge(streamKey, ORDER_GROUP, recordId);
+            log.error("订单消息多次处理失败，移到死信队列，stream: {}，id: {}，values: {}", streamKey, recordId, values);
+        } catch (Exception e) {
+            log.error("订单消息移到死信队列失败，stream: {}，id: {}", streamKey, recordId, e);
+            return;
+        }
+        try {
+            VoucherOrder voucherOrder = BeanUtil.fillBeanWithMap(values, new VoucherOrder(), true);
+            seckillOrderNotifier.publish(Collections.emptyList(), List.of(voucherOrder));
+        } catch (Exception e) {
+            log.warn("发送订单结果通知失败，stream: {}，id: {}", streamKey, recordId, e);
+        }
+    }
+
+    /**
+     * 删除没有未确认消息且长时间空闲的消费者，避免节点重启后旧的消费者名称一直留在消费组中
+     */
+    private void removeIdleConsumers(String streamKey, Duration expire) {
+        StreamInfo.XInfoConsumers consumers = stringRedisTemplate.opsForStream().consumers(streamKey, ORDER_GROUP);
+        consumers.forEach(info -> {
+            if (info.pendingCount() == 0 && info.idleTimeMs() > expire.toMillis()
+                    && !info.consumerName().startsWith(seckillProperties.getConsumer().getNodeId() + "-")) {
+                stringRedisTemplate.opsForStream().deleteConsumer(streamKey, Consumer.from(ORDER_GROUP, info.consumerName()));
+                log.info("删除空闲的订单消费者，stream: {}，consumer: {}", streamKey, info.consumerName());
+            }
+        });
+    }
+
+    /**
+     * 创建消费组 XGROUP CREATE stream.orders g1 0 MKSTREAM，已经存在时忽略
+     */
+    private void createGroup(String streamKey) {
+        try {
+            stringRedisTemplate.execute((RedisCallback<Object>) connection -> connection.streamCommands()
+                    .xGroupCreate(streamKey.getBytes(StandardCharsets.UTF_8), ORDER_GROUP, ReadOffset.from("0"), true));
+        } catch (RedisSystemException e) {
+            if (e.getMessage() == null || !e.getMessage().contains("BUSYGROUP")) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 分区对应的 stream key，只有一个分区时沿用 stream.orders
+     */
+    private String streamKey(int partition) {
+        return seckillProperties.getConsumer().getPartitions() <= 1 ? queueName : queueName + "." + partition;
+    }
+
+    /**
+     * 用户的订单写入的 stream，按 userId 取模，同一用户的订单总在同一个分区中，保持先后顺序
+     */
+    private String streamKeyOf(Long userId) {
+        return streamKey((int) Math.floorMod(userId, (long) seckillProperties.getConsumer().getPartitions()));
+    }
+
+    /**
+     * 消费线程负责的分区：分区数不少于线程数时按编号取模分配，否则多个线程共同消费同一个分区
+     */
+    private List<String> streamKeysOf(int thread) {
+        SeckillProperties.Consumer config = seckillProperties.getConsumer();
+        List<String> keys = new ArrayList<>();
+        if (config.getPartitions() >= config.getThreads()) {
+            for (int partition = thread; partition < config.getPartitions(); partition += config.getThreads()) {
+                keys.add(streamKey(partition));
+            }
+        } else {
+            keys.add(streamKey(thread % config.getPartitions()));
+        }
+        return keys;
     }
 
-    private IVoucherOrderService proxy;
 
     @Override
     public Result seckillVoucher(Long voucherId) {
         //获取用户
         Long userId = UserHolder.getUser().getId();
+        //0.本地判断已售罄或已下单，直接拒绝，不访问 Redis
+        if (seckillLocalFilter.isSoldOut(voucherId)) {
+            return Result.fail("库存不足");
+        }
+        if (seckillLocalFilter.hasOrdered(voucherId, userId)) {
+            return Result.fail("不能重复下单");
+        }
         //获取订单id
         long orderId = redisIdWorker.nextId("order");
-        //1.执行lua脚本
-        Long result = stringRedisTemplate.execute(
-                SECKILL_SCRIPT,
-                Collections.emptyList(),
-                voucherId.toString(), userId.toString(),String.valueOf(orderId)
-        );
+        //1.执行lua脚本，Redis 不可用时快速失败，不占用请求线程等待
+        Long result;
+        try {
+            //1.1库存分片的秒杀券
+            int shards = redisCircuitBreaker.execute(() -> seckillStockShards.shardsOf(voucherId));
+            if (shards > 1) {
+                return seckillVoucherSharded(voucherId, userId, orderId, shards);
+            }
+            result = redisCircuitBreaker.execute(() -> stringRedisTemplate.execute(
+                    SECKILL_SCRIPT,
+                    Collections.singletonList(streamKeyOf(userId)),
+                    voucherId.toString(), userId.toString(), String.valueOf(orderId)
+            ));
+        } catch (RuntimeException e) {
+            if (!RedisCircuitBreaker.isRedisFailure(e)) {
+                throw e;
+            }
+            return Result.fail("系统繁忙，请稍后再试");
+        }
         //2.判断结果是否为0
         int r = result.intValue();
         if(r != 0){
-            //2.1.不为0，没有购买资格
+            //2.1.不为0，没有购买资格，记录本地标记，之后的请求不再访问 Redis
+            if (r == 1) {
+                seckillLocalFilter.markSoldOut(voucherId);
+            } else {
+                seckillLocalFilter.markOrdered(voucherId, userId);
+            }
             return Result.fail(r == 1 ? "库存不足" : "不能重复下单");
         }
-        //3.获取代理对象
-        proxy = (IVoucherOrderService) AopContext.currentProxy();
-        //4.返回订单id
+        seckillLocalFilter.markOrdered(voucherId, userId);
+        //3.返回订单id
         return Result.ok(orderId);
     }
 
 
+    @Override
+    public Result joinQueue(Long voucherId) {
+        if (!seckillAdmission.isWaitingRoom()) {
+            return Result.fail("未开启排队");
+        }
+        Long userId = UserHolder.getUser().getId();
+        //1.已售罄或已下单，不需要排队
+        if (seckillLocalFilter.isSoldOut(voucherId)) {
+            return Result.fail("库存不足");
+        }
+        if (seckillLocalFilter.hasOrdered(voucherId, userId)) {
+            return Result.fail("不能重复下单");
+        }
+        //2.领取排队号
+        try {
+            long ticket = seckillAdmission.join(voucherId, userId);
+            if (ticket < 0) {
+                return Result.fail("排队人数过多，请稍后再试");
+            }
+            return Result.ok(toTicket(voucherId, seckillAdmission.status(voucherId, userId)));
+        } catch (RuntimeException e) {
+            if (!RedisCircuitBreaker.isRedisFailure(e)) {
+                throw e;
+            }
+            return Result.fail("系统繁忙，请稍后再试");
+        }
+    }
+
+    @Override
+    public Result queryQueue(Long voucherId) {
+        if (!seckillAdmission.isWaitingRoom()) {
+            return Result.fail("未开启排队");
+        }
+        Long userId = UserHolder.getUser().getId();
+        try {
+            return Result.ok(toTicket(voucherId, seckillAdmission.status(voucherId, userId)));
+        } catch (RuntimeException e) {
+            if (!RedisCircuitBreaker.isRedisFailure(e)) {
+                throw e;
+            }
+            return Result.fail("系统繁忙，请稍后再试");
+        }
+    }
+
+    @Override
+    public Result queryOrderStatus(Long orderId) {
+        Long userId = UserHolder.getUser().getId();
+        try {
+            String status = redisCircuitBreaker.execute(() -> seckillOrderNotifier.status(orderId, userId));
+            return Result.ok(new SeckillOrderStatus(orderId, status));
+        } catch (RuntimeException e) {
+            if (!RedisCircuitBreaker.isRedisFailure(e)) {
+                throw e;
+            }
+            return Result.fail("系统繁忙，请稍后再试");
+        }
+    }
+
+    @Override
+    public DeferredResult<Result> waitOrderStatus(Long orderId) {
+        Long userId = UserHolder.getUser().getId();
+        //1.超时返回 PENDING，客户端重新发起长轮询
+        DeferredResult<Result> result = new DeferredResult<>(
+                seckillProperties.getNotify().getPollTimeout().toMillis(),
+                Result.ok(new SeckillOrderStatus(orderId, SeckillOrderStatus.PENDING)));
+        //2.登记等待者，结果已经写入时立即返回
+        Runnable cancel = seckillOrderNotifier.watch(orderId, userId,
+                status -> result.setResult(Result.ok(new SeckillOrderStatus(orderId, status))));
+        //3.完成、超时或连接断开时取消等待
+        result.onCompletion(cancel);
+        return result;
+    }
+
+    @Override
+    public SseEmitter subscribeOrderStatus(Long orderId) {
+        Long userId = UserHolder.getUser().getId();
+        SseEmitter emitter = new SseEmitter(seckillProperties.getNotify().getSseTimeout().toMillis());
+        //1.先推送当前状态
+        try {
+            emitter.send(SseEmitter.event().name("status").data(new SeckillOrderStatus(orderId, SeckillOrderStatus.PENDING)));
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+            return emitter;
+        }
+        //2.收到结果后推送并关闭连接
+        Runnable cancel = seckillOrderNotifier.watch(orderId, userId, status -> {
+            try {
+                emitter.send(SseEmitter.event().name("status").data(new SeckillOrderStatus(orderId, status)));
+                emitter.complete();
+            } catch (IOException e) {
+                emitter.completeWithError(e);
+            }
+        });
+        //3.完成、超时或连接断开时取消等待
+        emitter.onCompletion(cancel);
+        emitter.onTimeout(emitter::complete);
+        return emitter;
+    }
+
+    /**
+     * @param status [排队号, 已放行的最大排队号]
+     */
+    private static SeckillTicket toTicket(Long voucherId, long[] status) {
+        SeckillTicket ticket = new SeckillTicket();
+        ticket.setVoucherId(voucherId);
+        ticket.setTicket(status[0]);
+        ticket.setAdmitted(status[0] > 0 && status[0] <= status[1]);
+        ticket.setAhead(status[0] > 0 ? Math.max(0, status[0] - status[1] - 1) : 0);
+        return ticket;
+    }
+
+    /**
+     * 库存分片的秒杀：在分片上扣减库存、登记用户并发送下单消息
+     */
+    private Result seckillVoucherSharded(Long voucherId, Long userId, long orderId, int shards) {
+        //1.扣减分片库存并发送消息到订单队列
+        int shard = redisCircuitBreaker.execute(
+                () -> seckillStockShards.claim(voucherId, userId, orderId, shards, streamKeyOf(userId)));
+        if (shard < 0) {
+            if (shard == -1) {
+                seckillLocalFilter.markSoldOut(voucherId);
+            } else {
+                seckillLocalFilter.markOrdered(voucherId, userId);
+            }
+            return Result.fail(shard == -1 ? "库存不足" : "不能重复下单");
+        }
+        seckillLocalFilter.markOrdered(voucherId, userId);
+        return Result.ok(orderId);
+    }
+
     @Transactional
     @Override
     public void createVoucherOrder(VoucherOrder voucherOrder) {
-        //5.一人一单
-        Long userId = voucherOrder.getUserId();
-        //5.1 查询订单
-        Long count = query().eq("user_id", userId)
-                .eq("voucher_id", voucherOrder.getVoucherId()).count();
-        //5.2判断用户是否已经购买过
-        if (count > 0) {
-            //5.3如果购买过，抛出异常
-            log.error("用户已经下单，无法重复下单，userId: {}", userId);
-        }
-        //6.扣减库存
-        //添加乐观锁，防止超卖,MYSQL中执行写的操作时默认加排他锁
-        boolean success = seckillVoucherService.update()
-                .setSql("stock = stock - 1")
-                .eq("voucher_id", voucherOrder.getVoucherId()).gt("stock", 0)
-                .update();
-        if (!success) {
-            log.error("库存不足");
-        }
-        save(voucherOrder);
+        //一人一单由唯一索引 (user_id, voucher_id) 保证，不需要分布式锁和 count 查询
+        createVoucherOrders(List.of(voucherOrder));
     }
 /*
     private final BlockingQueue<VoucherOrder> orderTasks = new ArrayBlockingQueue<>(1024*1024);
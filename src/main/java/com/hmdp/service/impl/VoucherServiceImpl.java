@@ -1,5 +1,6 @@
 package com.hmdp.service.impl;
 
+import cn.hutool.core.bean.BeanUtil;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.hmdp.dto.Result;
 import com.hmdp.entity.Voucher;
@@ -7,20 +8,34 @@ import com.hmdp.mapper.VoucherMapper;
 import com.hmdp.entity.SeckillVoucher;
 import com.hmdp.service.ISeckillVoucherService;
 import com.hmdp.service.IVoucherService;
+import com.hmdp.utils.HmdpCacheEvict;
+import com.hmdp.utils.HmdpCached;
+import com.hmdp.utils.RedisCircuitBreaker;
+import com.hmdp.utils.SeckillLocalFilter;
+import com.hmdp.utils.SeckillStockShards;
 import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.aop.framework.AopContext;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
-import static com.hmdp.utils.RedisConstants.SECKILL_STOCK_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_VOUCHER_KEY;
 
 
 /**
  * @author Ace
  */
+@Slf4j
 @Service
 public class VoucherServiceImpl extends ServiceImpl<VoucherMapper, Voucher> implements IVoucherService {
 
@@ -30,16 +45,63 @@ public class VoucherServiceImpl extends ServiceImpl<VoucherMapper, Voucher> impl
     @Resource
     StringRedisTemplate stringRedisTemplate;
 
+    @Resource
+    private SeckillStockShards seckillStockShards;
+
+    @Resource
+    private SeckillLocalFilter seckillLocalFilter;
+
+    @Resource
+    private RedisCircuitBreaker redisCircuitBreaker;
+
     @Override
     public Result queryVoucherOfShop(Long shopId) {
-        // 查询优惠券信息
-        List<Voucher> vouchers = getBaseMapper().queryVoucherOfShop(shopId);
+        //1.查询优惠券信息，走代理对象才能使用缓存
+        IVoucherService proxy = (IVoucherService) AopContext.currentProxy();
+        List<Voucher> cached = proxy.queryVoucherListOfShop(shopId);
+        //2.库存在秒杀期间一直变化，不放入缓存，每次从 Redis 读取秒杀券的剩余库存
+        List<Long> seckillIds = cached.stream()
+                .filter(voucher -> Integer.valueOf(1).equals(voucher.getType()))
+                .map(Voucher::getId)
+                .collect(Collectors.toList());
+        Map<Long, Integer> stocks = Collections.emptyMap();
+        if (!seckillIds.isEmpty()) {
+            try {
+                stocks = redisCircuitBreaker.execute(() -> seckillStockShards.stockOf(seckillIds));
+            } catch (RuntimeException e) {
+                if (!RedisCircuitBreaker.isRedisFailure(e)) {
+                    throw e;
+                }
+                //Redis 不可用时不返回库存
+                log.warn("查询秒杀库存失败，shopId: {}", shopId, e);
+            }
+        }
+        //3.缓存中的对象可能被本地缓存共享，复制后再填入库存
+        List<Voucher> vouchers = new ArrayList<>(cached.size());
+        for (Voucher voucher : cached) {
+            Voucher copy = BeanUtil.copyProperties(voucher, Voucher.class);
+            copy.setStock(stocks.get(voucher.getId()));
+            vouchers.add(copy);
+        }
         // 返回结果
         return Result.ok(vouchers);
     }
 
+    @Override
+    @HmdpCached(prefix = CACHE_VOUCHER_KEY, ttl = 2, type = List.class, typeArguments = Voucher.class)
+    public List<Voucher> queryVoucherListOfShop(Long shopId) {
+        return getBaseMapper().queryVoucherOfShop(shopId);
+    }
+
+    @Override
+    @HmdpCacheEvict(prefix = CACHE_VOUCHER_KEY, key = "#voucher.shopId")
+    public void addVoucher(Voucher voucher) {
+        save(voucher);
+    }
+
     @Override
     @Transactional
+    @HmdpCacheEvict(prefix = CACHE_VOUCHER_KEY, key = "#voucher.shopId")
     public void addSeckillVoucher(Voucher voucher) {
         // 保存优惠券
         save(voucher);
@@ -50,7 +112,41 @@ public class VoucherServiceImpl extends ServiceImpl<VoucherMapper, Voucher> impl
         seckillVoucher.setBeginTime(voucher.getBeginTime());
         seckillVoucher.setEndTime(voucher.getEndTime());
         seckillVoucherService.save(seckillVoucher);
-        //保存秒杀券信息到redis
-        stringRedisTemplate.opsForValue().set(SECKILL_STOCK_KEY + voucher.getId(),voucher.getStock().toString());
+        //保存秒杀券信息到redis，开启库存分片时拆分到多个分片
+        seckillStockShards.initStock(voucher.getId(), voucher.getStock());
+    }
+
+    @Override
+    @Transactional
+    public Result addSeckillStock(Long voucherId, Integer amount) {
+        if (amount == null || amount <= 0) {
+            return Result.fail("补充数量必须大于0");
+        }
+        Voucher voucher = getById(voucherId);
+        if (voucher == null) {
+            return Result.fail("优惠券不存在");
+        }
+        //1.补充数据库库存
+        boolean success = seckillVoucherService.lambdaUpdate()
+                .setSql("stock = stock + {0}", amount)
+                .eq(SeckillVoucher::getVoucherId, voucherId)
+                .update();
+        if (!success) {
+            return Result.fail("不是秒杀券");
+        }
+        //2.事务提交后再补充redis库存，并清除所有节点的售罄标记，回滚时不会多出 Redis 库存；
+        //优惠券列表的缓存中不含库存，不需要删除
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    seckillStockShards.addStock(voucherId, amount);
+                    seckillLocalFilter.markRestocked(voucherId);
+                } catch (RuntimeException e) {
+                    log.error("补充redis库存失败，数据库库存已补充，voucherId: {}，amount: {}", voucherId, amount, e);
+                }
+            }
+        });
+        return Result.ok();
     }
 }
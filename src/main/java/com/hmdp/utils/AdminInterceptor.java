@@ -0,0 +1,33 @@
+package com.hmdp.utils;
+
+import com.hmdp.config.CacheProperties;
+import com.hmdp.dto.UserDTO;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * @author Ace
+ * 管理接口拦截器，在登录拦截器之后执行，只放行 hmdp.cache.admin-user-ids 中的用户
+ */
+public class AdminInterceptor implements HandlerInterceptor {
+
+    private final CacheProperties cacheProperties;
+
+    public AdminInterceptor(CacheProperties cacheProperties) {
+        this.cacheProperties = cacheProperties;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        //1.判断是否是管理员
+        UserDTO user = UserHolder.getUser();
+        if (user == null || !cacheProperties.getAdminUserIds().contains(user.getId())) {
+            //不是，需要拦截，设置状态码为403
+            response.setStatus(403);
+            return false;
+        }
+        //2.是管理员，放行请求
+        return true;
+    }
+}
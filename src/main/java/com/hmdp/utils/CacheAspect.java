@@ -0,0 +1,147 @@
+package com.hmdp.utils;
+
+import com.hmdp.dto.Result;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.context.expression.MethodBasedEvaluationContext;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.annotation.Order;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * @HmdpCached 和 @HmdpCacheEvict 的切面实现
+ * 优先级高于事务切面，位于事务之外：查询回源时由被缓存的方法自己开启事务
+ * 删除缓存交给 CacheInvalidator，外层还有事务时同样等到提交之后再删除
+ * @author Ace
+ */
+@Slf4j
+@Aspect
+@Component
+@Order(0)
+public class CacheAspect {
+
+    private final CacheClient cacheClient;
+
+    private final CacheStrategyRegistry strategyRegistry;
+
+    private final CacheInvalidator cacheInvalidator;
+
+    private final SpelExpressionParser parser = new SpelExpressionParser();
+
+    private final ParameterNameDiscoverer parameterNameDiscoverer = new DefaultParameterNameDiscoverer();
+
+    /**
+     * 解析后的 key 表达式
+     */
+    private final Map<String, Expression> expressions = new ConcurrentHashMap<>();
+
+    /**
+     * 方法对应的缓存值类型
+     */
+    private final Map<Method, Type> valueTypes = new ConcurrentHashMap<>();
+
+    public CacheAspect(CacheClient cacheClient, CacheStrategyRegistry strategyRegistry, CacheInvalidator cacheInvalidator) {
+        this.cacheClient = cacheClient;
+        this.strategyRegistry = strategyRegistry;
+        this.cacheInvalidator = cacheInvalidator;
+    }
+
+    @Around("@annotation(cached)")
+    public Object cached(ProceedingJoinPoint joinPoint, HmdpCached cached) throws Throwable {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        boolean wrapResult = Result.class.equals(method.getReturnType());
+        Object id = keyOf(cached.key(), method, joinPoint.getArgs());
+        Type type = valueTypes.computeIfAbsent(method, m -> valueType(m, cached));
+        //回源：执行原方法，返回 Result 时取出 data，失败的 Result 视为数据不存在
+        Function<Object, Object> dbFallback = ignored -> {
+            Object ret = proceed(joinPoint);
+            if (wrapResult) {
+                Result result = (Result) ret;
+                return result != null && Boolean.TRUE.equals(result.getSuccess()) ? result.getData() : null;
+            }
+            return ret;
+        };
+        CacheStrategy strategy = strategyRegistry.resolve(cached.prefix(), cached.strategy());
+        Object value = switch (strategy) {
+            case PASS_THROUGH -> cacheClient.queryWithPassThrough(
+                    cached.prefix(), id, type, dbFallback, cached.ttl(), cached.unit());
+            case MUTEX -> cacheClient.queryWithMutex(
+                    cached.prefix(), id, type, dbFallback, cached.ttl(), cached.unit());
+            case LOGICAL_EXPIRE -> cacheClient.queryWithLogicalExpire(
+                    cached.prefix(), id,
+                    ResolvableType.forClassWithGenerics(RedisData.class, ResolvableType.forType(type)).getType(),
+                    dbFallback, cached.ttl(), cached.unit());
+        };
+        if (!wrapResult) {
+            return value;
+        }
+        if (value == null) {
+            return cached.nullMessage().isEmpty() ? Result.ok() : Result.fail(cached.nullMessage());
+        }
+        return Result.ok(value);
+    }
+
+    @Around("@annotation(evict)")
+    public Object evict(ProceedingJoinPoint joinPoint, HmdpCacheEvict evict) throws Throwable {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        Object ret = joinPoint.proceed();
+        Object id = keyOf(evict.key(), method, joinPoint.getArgs());
+        if (id != null) {
+            cacheInvalidator.invalidate(evict.prefix() + id);
+        }
+        return ret;
+    }
+
+    /**
+     * 计算缓存 key 中前缀之后的部分
+     */
+    private Object keyOf(String key, Method method, Object[] args) {
+        if (key.isEmpty()) {
+            if (args.length == 0) {
+                throw new IllegalStateException("方法没有参数，需要指定缓存 key 表达式：" + method);
+            }
+            return args[0];
+        }
+        Expression expression = expressions.computeIfAbsent(key, parser::parseExpression);
+        return expression.getValue(new MethodBasedEvaluationContext(null, method, args, parameterNameDiscoverer));
+    }
+
+    /**
+     * 缓存值的类型：优先使用注解上声明的类型，否则使用方法的返回类型
+     */
+    private static Type valueType(Method method, HmdpCached cached) {
+        if (Void.class.equals(cached.type())) {
+            if (Result.class.equals(method.getReturnType())) {
+                throw new IllegalStateException("方法返回 Result 时需要在 @HmdpCached 中指定 type：" + method);
+            }
+            return method.getGenericReturnType();
+        }
+        if (cached.typeArguments().length == 0) {
+            return cached.type();
+        }
+        return ResolvableType.forClassWithGenerics(cached.type(), cached.typeArguments()).getType();
+    }
+
+    private static Object proceed(ProceedingJoinPoint joinPoint) {
+        try {
+            return joinPoint.proceed();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
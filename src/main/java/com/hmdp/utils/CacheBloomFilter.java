@@ -0,0 +1,177 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.lang.hash.MurmurHash;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 布隆过滤器，本地位数组 + Redis bitmap 两份，位的下标计算方式一致
+ * 本地用于快速判断，Redis bitmap 用于多个节点之间共享以及节点重启后的恢复
+ * @author Ace
+ */
+public class CacheBloomFilter {
+
+    private final StringRedisTemplate stringRedisTemplate;
+    /**
+     * Redis bitmap 的 key
+     */
+    private final String key;
+    /**
+     * 位数组长度
+     */
+    private final long bitSize;
+    /**
+     * 哈希函数个数
+     */
+    private final int hashCount;
+    /**
+     * 是否只使用 Redis bitmap 判断
+     */
+    private final boolean redisOnly;
+
+    private final AtomicLongArray bits;
+
+    public CacheBloomFilter(String key, long expectedInsertions, double fpp, boolean redisOnly,
+                            StringRedisTemplate stringRedisTemplate) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.key = key;
+        this.redisOnly = redisOnly;
+        //根据预期元素个数和误判率计算位数组长度和哈希函数个数
+        long m = (long) (-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        this.bitSize = Math.max(64, m);
+        this.hashCount = Math.max(1, (int) Math.round((double) bitSize / expectedInsertions * Math.log(2)));
+        this.bits = new AtomicLongArray(redisOnly ? 0 : (int) ((bitSize + 63) >>> 6));
+    }
+
+    /**
+     * 判断元素是否可能存在，返回 false 时一定不存在
+     */
+    public boolean mightContain(Object value) {
+        long[] offsets = offsets(value);
+        if (redisOnly) {
+            List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                byte[] rawKey = key.getBytes(StandardCharsets.UTF_8);
+                for (long offset : offsets) {
+                    connection.stringCommands().getBit(rawKey, offset);
+                }
+                return null;
+            });
+            return results.stream().allMatch(Boolean.TRUE::equals);
+        }
+        for (long offset : offsets) {
+            if ((bits.get((int) (offset >>> 6)) & (1L << offset)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 添加元素，同时写入本地位数组和 Redis bitmap
+     */
+    public void put(Object value) {
+        long[] offsets = offsets(value);
+        setBits(offsets);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            byte[] rawKey = key.getBytes(StandardCharsets.UTF_8);
+            for (long offset : offsets) {
+                connection.stringCommands().setBit(rawKey, offset, true);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 只写入本地位数组，用于接收其他节点广播的新增元素
+     */
+    public void putLocal(Object value) {
+        setBits(offsets(value));
+    }
+
+    /**
+     * 批量添加元素：先在本地构建，再一次性与 Redis bitmap 合并（BITOP OR），不会覆盖其他节点写入的位
+     */
+    public void putAll(Iterable<?> values) {
+        //每个元素只计算一次下标，同时写入本地位数组和待合并的 bitmap，values 只遍历一次
+        byte[] bitmap = new byte[(int) ((bitSize + 7) >>> 3)];
+        for (Object value : values) {
+            long[] offsets = offsets(value);
+            setBits(offsets);
+            for (long offset : offsets) {
+                bitmap[(int) (offset >>> 3)] |= (byte) (0x80 >>> (offset & 7));
+            }
+        }
+        byte[] rawKey = key.getBytes(StandardCharsets.UTF_8);
+        byte[] tmpKey = (key + ":tmp:" + System.nanoTime()).getBytes(StandardCharsets.UTF_8);
+        stringRedisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.stringCommands().set(tmpKey, bitmap);
+            connection.stringCommands().bitOp(RedisStringCommands.BitOperation.OR, rawKey, rawKey, tmpKey);
+            connection.keyCommands().del(tmpKey);
+            return null;
+        });
+    }
+
+    /**
+     * 从 Redis bitmap 同步到本地位数组，弥补丢失的广播消息
+     */
+    public void refreshFromRedis() {
+        if (redisOnly) {
+            return;
+        }
+        byte[] bitmap = stringRedisTemplate.execute((RedisCallback<byte[]>) connection ->
+                connection.stringCommands().get(key.getBytes(StandardCharsets.UTF_8)));
+        if (bitmap == null) {
+            return;
+        }
+        int limit = (int) Math.min(bitmap.length, (bitSize + 7) >>> 3);
+        for (int i = 0; i < limit; i++) {
+            int b = bitmap[i] & 0xFF;
+            while (b != 0) {
+                int bit = Integer.numberOfLeadingZeros(b) - 24;
+                long offset = ((long) i << 3) + bit;
+                setBit(offset);
+                b &= ~(0x80 >>> bit);
+            }
+        }
+    }
+
+    private void setBits(long[] offsets) {
+        if (redisOnly) {
+            return;
+        }
+        for (long offset : offsets) {
+            setBit(offset);
+        }
+    }
+
+    private void setBit(long offset) {
+        int index = (int) (offset >>> 6);
+        long mask = 1L << offset;
+        long word;
+        do {
+            word = bits.get(index);
+            if ((word & mask) != 0) {
+                return;
+            }
+        } while (!bits.compareAndSet(index, word, word | mask));
+    }
+
+    /**
+     * 双重哈希计算元素对应的所有位下标
+     */
+    private long[] offsets(Object value) {
+        long[] hash = MurmurHash.hash128(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+        long[] offsets = new long[hashCount];
+        long combined = hash[0];
+        for (int i = 0; i < hashCount; i++) {
+            offsets[i] = (combined & Long.MAX_VALUE) % bitSize;
+            combined += hash[1];
+        }
+        return offsets;
+    }
+}
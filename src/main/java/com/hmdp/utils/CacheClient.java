@@ -2,20 +2,49 @@ package com.hmdp.utils;
 
 
 import cn.hutool.core.util.BooleanUtil;
-import cn.hutool.core.util.StrUtil;
-import cn.hutool.json.JSONUtil;
-import com.alibaba.fastjson2.JSON;
-import com.alibaba.fastjson2.TypeReference;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hmdp.config.CacheProperties;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.stereotype.Component;
 
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import static com.hmdp.utils.RedisConstants.*;
 
@@ -29,10 +58,185 @@ public class CacheClient {
 
     private final StringRedisTemplate stringRedisTemplate;
 
-    private static final ExecutorService CACHE_REBUILD_EXECUTOR = Executors.newFixedThreadPool(10);
+    /**
+     * 缓存值按字节数组读写，编解码由 valueSerializer 负责
+     */
+    private final RedisTemplate<String, byte[]> cacheRedisTemplate;
+
+    /**
+     * 异步查询使用的 Redis 客户端，与 cacheRedisTemplate 读写同样的数据
+     */
+    private final ReactiveRedisTemplate<String, byte[]> reactiveCacheRedisTemplate;
+
+    private final CacheValueSerializer valueSerializer;
+
+    private final RedisMessageListenerContainer listenerContainer;
+
+    private final CacheProperties cacheProperties;
+
+    /**
+     * 异步重建缓存的调度器：有界队列、按 key 去重、数据库变慢时退避
+     */
+    private final CacheRebuildExecutor rebuildExecutor;
+
+    /**
+     * 异步查询拿到 Redis 结果后的处理（反序列化、加锁、回源、写回）在虚拟线程上执行，不占用 Lettuce 的 IO 线程
+     */
+    private static final ExecutorService CACHE_ASYNC_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final CacheMetrics cacheMetrics;
+
+    /**
+     * 热点 key 探测，热点 key 在本地保存短时间的副本
+     */
+    private final HotKeyDetector hotKeyDetector;
+
+    /**
+     * Redis 熔断器，打开时查询降级为本地旧数据或限流查询数据库
+     */
+    private final RedisCircuitBreaker circuitBreaker;
+
+    /**
+     * 最近读到或写入的数据，只在 Redis 熔断时使用，未启用熔断时为 null
+     */
+    private final Cache<String, Object> staleCopies;
+
+    /**
+     * Redis 熔断时查询数据库的并发名额
+     */
+    private final Semaphore degradedPermits;
+
+    /**
+     * 数据库中不存在时写入的空值，防止缓存穿透
+     */
+    private static final byte[] NULL_VALUE = new byte[0];
+
+    /**
+     * 按版本号写入逻辑过期缓存
+     */
+    private static final DefaultRedisScript<Long> CACHE_CAS_SCRIPT;
+
+    static {
+        CACHE_CAS_SCRIPT = new DefaultRedisScript<>();
+        CACHE_CAS_SCRIPT.setLocation(new ClassPathResource("cache_cas.lua"));
+        CACHE_CAS_SCRIPT.setResultType(Long.class);
+    }
+
+    /**
+     * 写入哈希桶中的一个字段，并延长桶的过期时间
+     */
+    private static final DefaultRedisScript<Long> CACHE_BUCKET_SET_SCRIPT;
+
+    static {
+        CACHE_BUCKET_SET_SCRIPT = new DefaultRedisScript<>();
+        CACHE_BUCKET_SET_SCRIPT.setLocation(new ClassPathResource("cache_bucket_set.lua"));
+        CACHE_BUCKET_SET_SCRIPT.setResultType(Long.class);
+    }
+
+    /**
+     * 按版本号写入哈希桶中的一个字段，用于启用哈希桶存储的逻辑过期缓存
+     */
+    private static final DefaultRedisScript<Long> CACHE_BUCKET_CAS_SCRIPT;
 
-    public CacheClient(StringRedisTemplate stringRedisTemplate) {
+    static {
+        CACHE_BUCKET_CAS_SCRIPT = new DefaultRedisScript<>();
+        CACHE_BUCKET_CAS_SCRIPT.setLocation(new ClassPathResource("cache_bucket_cas.lua"));
+        CACHE_BUCKET_CAS_SCRIPT.setResultType(Long.class);
+    }
+
+    /**
+     * 哈希桶 key 的中间段，例如 cache:shop:bucket:12 存放 id 为 1200~1299 的商铺
+     */
+    private static final String BUCKET_SEGMENT = "bucket:";
+
+    /**
+     * 本地一级缓存，key 为缓存前缀，只有在配置中声明的前缀才会启用
+     * 注意：一级缓存返回的是同一个对象实例，调用方不要修改返回值
+     */
+    private final Map<String, Cache<String, Object>> localCaches = new HashMap<>();
+
+    /**
+     * 同一 JVM 内对同一个 key 的并发回源合并为一次
+     */
+    private final SingleFlight singleFlight = new SingleFlight();
+
+    /**
+     * 等待其他节点重建缓存的信号，收到重建完成通知后唤醒
+     */
+    private final Map<String, CompletableFuture<Void>> rebuildSignals = new ConcurrentHashMap<>();
+
+    /**
+     * 布隆过滤器，key 为缓存前缀，通过 initBloomFilter 注册
+     */
+    private final Map<String, CacheBloomFilter> bloomFilters = new ConcurrentHashMap<>();
+
+    private static final ScheduledExecutorService BLOOM_REFRESH_EXECUTOR = Executors.newSingleThreadScheduledExecutor();
+
+    public CacheClient(StringRedisTemplate stringRedisTemplate,
+                       RedisTemplate<String, byte[]> cacheRedisTemplate,
+                       ReactiveRedisTemplate<String, byte[]> reactiveCacheRedisTemplate,
+                       CacheValueSerializer valueSerializer,
+                       RedisMessageListenerContainer listenerContainer,
+                       CacheProperties cacheProperties,
+                       CacheRebuildExecutor rebuildExecutor,
+                       CacheMetrics cacheMetrics,
+                       HotKeyDetector hotKeyDetector,
+                       RedisCircuitBreaker circuitBreaker) {
         this.stringRedisTemplate = stringRedisTemplate;
+        this.cacheRedisTemplate = cacheRedisTemplate;
+        this.reactiveCacheRedisTemplate = reactiveCacheRedisTemplate;
+        this.valueSerializer = valueSerializer;
+        this.listenerContainer = listenerContainer;
+        this.cacheProperties = cacheProperties;
+        this.rebuildExecutor = rebuildExecutor;
+        this.cacheMetrics = cacheMetrics;
+        this.hotKeyDetector = hotKeyDetector;
+        this.circuitBreaker = circuitBreaker;
+        CacheProperties.Breaker breaker = cacheProperties.getBreaker();
+        this.staleCopies = breaker.isEnabled()
+                ? Caffeine.newBuilder()
+                        .maximumSize(breaker.getStaleMaximumSize())
+                        .expireAfterWrite(breaker.getStaleTtl())
+                        .build()
+                : null;
+        this.degradedPermits = new Semaphore(breaker.getDbConcurrency());
+        cacheProperties.getLocal().forEach((prefix, local) -> localCaches.put(prefix,
+                Caffeine.newBuilder()
+                        .maximumSize(local.getMaximumSize())
+                        .expireAfterWrite(local.getTtl())
+                        .build()));
+    }
+
+    @PostConstruct
+    private void init() {
+        //订阅缓存重建完成频道，唤醒本节点等待该 key 的线程
+        listenerContainer.addMessageListener(
+                (message, pattern) -> {
+                    String key = new String(message.getBody(), StandardCharsets.UTF_8);
+                    CompletableFuture<Void> signal = rebuildSignals.remove(key);
+                    if (signal != null) {
+                        signal.complete(null);
+                    }
+                },
+                new ChannelTopic(CACHE_REBUILT_CHANNEL));
+        //订阅布隆过滤器新增元素的广播，同步到本地位数组
+        listenerContainer.addMessageListener(
+                (message, pattern) -> {
+                    String body = new String(message.getBody(), StandardCharsets.UTF_8);
+                    int index = body.lastIndexOf('#');
+                    CacheBloomFilter filter = bloomFilters.get(body.substring(0, index));
+                    if (filter != null) {
+                        filter.putLocal(body.substring(index + 1));
+                    }
+                },
+                new ChannelTopic(BLOOM_FILTER_CHANNEL));
+        if (!hasLocalTier()) {
+            return;
+        }
+        //订阅缓存失效频道，其他节点删除缓存时同步清除本地一级缓存和热点副本
+        listenerContainer.addMessageListener(
+                (message, pattern) -> evictLocal(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(CACHE_INVALIDATE_CHANNEL));
     }
 
     /**
@@ -44,25 +248,478 @@ public class CacheClient {
      * @param <T>
      */
     public<T> void set(String key, T value, Long time, TimeUnit unit) {
-        stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(value), time, unit);
+        set(key, value, time, unit, 0);
+    }
+
+    /**
+     * 存储任意对象，过期时间加上随机抖动，并记录回源耗时用于提前刷新
+     * @param deltaMillis 回源耗时（毫秒），为 0 时不记录
+     */
+    private void set(String key, Object value, Long time, TimeUnit unit, long deltaMillis) {
+        long ttl = jitterTtl(time, unit);
+        cacheRedisTemplate.execute((RedisCallback<Object>) connection -> {
+            setRaw(connection, key, value, ttl, deltaMillis);
+            return null;
+        });
+    }
+
+    /**
+     * 写入空值，避免缓存穿透
+     */
+    private void setNull(String key) {
+        cacheRedisTemplate.execute((RedisCallback<Object>) connection -> {
+            setRaw(connection, key, null, TimeUnit.MINUTES.toMillis(CACHE_NULL_TTL), 0);
+            return null;
+        });
+    }
+
+    /**
+     * 在给定连接上写入缓存，pipeline 中也可以使用；启用哈希桶存储的前缀写入桶中的字段
+     * @param value 为 null 时写入空值
+     * @param ttlMillis 有效期（毫秒），不大于 0 时不过期（空值总是需要有效期）
+     * @param deltaMillis 回源耗时（毫秒），为 0 时不记录
+     */
+    private void setRaw(RedisConnection connection, String key, Object value, long ttlMillis, long deltaMillis) {
+        long now = System.currentTimeMillis();
+        long expireAt = now + ttlMillis;
+        String[] bucket = bucketOf(key);
+        if (bucket == null) {
+            byte[] raw;
+            if (value == null) {
+                raw = NULL_VALUE;
+            } else if (deltaMillis > 0) {
+                raw = valueSerializer.serialize(value, expireAt, (int) deltaMillis);
+            } else {
+                raw = valueSerializer.serialize(value);
+            }
+            connection.stringCommands().set(toBytes(key), raw,
+                    ttlMillis > 0 ? Expiration.milliseconds(ttlMillis) : Expiration.persistent(),
+                    RedisStringCommands.SetOption.upsert());
+            return;
+        }
+        //Hash 的字段没有独立的过期时间，过期时间总是记录在值的头部，读取时判断
+        byte[] raw;
+        if (value == null) {
+            raw = valueSerializer.serializeEmpty(expireAt);
+        } else if (ttlMillis > 0) {
+            raw = valueSerializer.serialize(value, expireAt, (int) deltaMillis);
+        } else {
+            raw = valueSerializer.serialize(value);
+        }
+        connection.scriptingCommands().eval(toBytes(CACHE_BUCKET_SET_SCRIPT.getScriptAsString()), ReturnType.INTEGER, 1,
+                toBytes(bucket[0]), toBytes(bucket[1]), raw, toBytes(String.valueOf(ttlMillis)), toBytes(String.valueOf(now)));
+    }
+
+    /**
+     * 读取缓存的原始字节，启用哈希桶存储的前缀从桶中读取字段
+     * @return key 不存在时返回 null，空值返回长度为 0 的数组
+     */
+    private byte[] getRaw(String keyPrefix, String key) {
+        String[] bucket = bucketOf(key);
+        if (bucket == null) {
+            return cacheMetrics.redis(keyPrefix, "get", () -> cacheRedisTemplate.opsForValue().get(key));
+        }
+        byte[] raw = cacheMetrics.redis(keyPrefix, "hget",
+                () -> cacheRedisTemplate.<String, byte[]>opsForHash().get(bucket[0], bucket[1]));
+        return fromBucket(raw);
+    }
+
+    /**
+     * 批量读取缓存的原始字节，启用哈希桶存储的前缀用 pipeline 逐个读取字段
+     * @return 与 keys 顺序一致
+     */
+    private List<byte[]> multiGetRaw(String keyPrefix, List<String> keys) {
+        if (bucketOf(keys.get(0)) == null) {
+            return cacheMetrics.redis(keyPrefix, "mget", () -> cacheRedisTemplate.opsForValue().multiGet(keys));
+        }
+        List<Object> results = cacheMetrics.redis(keyPrefix, "hget",
+                () -> cacheRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    for (String key : keys) {
+                        String[] bucket = bucketOf(key);
+                        connection.hashCommands().hGet(toBytes(bucket[0]), toBytes(bucket[1]));
+                    }
+                    return null;
+                }));
+        List<byte[]> raws = new ArrayList<>(keys.size());
+        for (Object result : results) {
+            raws.add(fromBucket((byte[]) result));
+        }
+        return raws;
+    }
+
+    /**
+     * 将桶中字段的值转换为与 String 存储一致的形式：已过期的按不存在处理，空值转换为长度为 0 的数组
+     * 过期的字段由写入桶的脚本抽查删除
+     */
+    private byte[] fromBucket(byte[] raw) {
+        if (raw == null) {
+            return null;
+        }
+        long[] expire = valueSerializer.readExpire(raw);
+        if (expire != null && expire[0] <= System.currentTimeMillis()) {
+            return null;
+        }
+        return valueSerializer.isEmpty(raw) ? NULL_VALUE : raw;
+    }
+
+    /**
+     * key 所在的哈希桶，id / size 相同的数据放在同一个桶中
+     * @return [桶 key, 字段]，未启用哈希桶存储或 id 不是数字时返回 null
+     */
+    private String[] bucketOf(String key) {
+        for (Map.Entry<String, CacheProperties.Bucket> entry : cacheProperties.getBucket().entrySet()) {
+            String keyPrefix = entry.getKey();
+            if (!key.startsWith(keyPrefix)) {
+                continue;
+            }
+            String field = key.substring(keyPrefix.length());
+            try {
+                long id = Long.parseLong(field);
+                return new String[]{keyPrefix + BUCKET_SEGMENT + Math.floorDiv(id, entry.getValue().getSize()), field};
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 给过期时间加上随机抖动，返回毫秒
+     */
+    private long jitterTtl(Long time, TimeUnit unit) {
+        long ttl = unit.toMillis(time);
+        double jitter = cacheProperties.getTtlJitter();
+        if (jitter <= 0) {
+            return ttl;
+        }
+        return ttl + (long) (ttl * ThreadLocalRandom.current().nextDouble(jitter));
+    }
+
+    /**
+     * XFetch 提前刷新：越接近过期、回源越慢，越可能触发刷新，
+     * 让刷新分散在过期前的一段时间内，而不是在过期瞬间集中回源
+     * @param raw Redis 中存储的字节数组
+     * @return 是否需要提前刷新
+     */
+    private boolean shouldRefreshEarly(byte[] raw) {
+        double beta = cacheProperties.getEarlyRefreshBeta();
+        if (beta <= 0) {
+            return false;
+        }
+        long[] expire = valueSerializer.readExpire(raw);
+        if (expire == null) {
+            return false;
+        }
+        long expireAt = expire[0];
+        long delta = expire[1];
+        double gap = -delta * beta * Math.log(ThreadLocalRandom.current().nextDouble());
+        return System.currentTimeMillis() + gap >= expireAt;
+    }
+
+    /**
+     * 后台刷新缓存，获取到互斥锁的节点才会回源，当前请求仍然返回旧值
+     */
+    private <R, ID> void refreshAsync(
+            String keyPrefix,
+            ID id,
+            Function<ID, R> dbFallback,
+            Long time,
+            TimeUnit unit) {
+        String key = keyPrefix + id;
+        rebuildAsync(keyPrefix, key, LOCK_CACHE_KEY + key, () -> {
+            long begin = System.currentTimeMillis();
+            R r = dbFallback.apply(id);
+            if (r != null) {
+                this.set(key, r, time, unit, Math.max(1, System.currentTimeMillis() - begin));
+                putLocal(keyPrefix, key, r);
+            }
+        });
     }
 
     /**
-     * 带有逻辑过期的存储任意对象
+     * 获取互斥锁后提交到重建调度器，重建结束或调度器拒绝时释放锁
+     * @param keyPrefix 缓存前缀
+     * @param key 缓存 key
+     * @param lockKey 互斥锁 key
+     * @param rebuild 重建逻辑
+     */
+    private void rebuildAsync(String keyPrefix, String key, String lockKey, Runnable rebuild) {
+        //本节点已经在重建，不必再去竞争锁
+        if (rebuildExecutor.isPending(key) || !tryLock(lockKey)) {
+            return;
+        }
+        boolean accepted = rebuildExecutor.submit(keyPrefix, key, () -> {
+            try {
+                rebuild.run();
+            } finally {
+                unlock(lockKey);
+            }
+        });
+        if (!accepted) {
+            unlock(lockKey);
+        }
+    }
+
+    /**
+     * 存储任意对象，不设置过期时间
      * @param key
      * @param value
-     * @param time
-     * @param unit
      * @param <T>
      */
-    public<T> void setWithLogicalExpire(String key, T value, Long time, TimeUnit unit) {
-        //把value转换为RedisData对象
-        RedisData<T> redisData = new RedisData<>();
+    public<T> void set(String key, T value) {
+        cacheRedisTemplate.execute((RedisCallback<Object>) connection -> {
+            setRaw(connection, key, value, 0, 0);
+            return null;
+        });
+    }
+
+    /**
+     * 读取任意对象
+     * @param key
+     * @param type 目标类型，支持泛型
+     * @return 不存在时返回 null
+     * @param <T>
+     */
+    public <T> T get(String key, Type type) {
+        String keyPrefix = CacheMetrics.prefixOf(key);
+        byte[] raw = getRaw(keyPrefix, key);
+        if (raw == null || raw.length == 0) {
+            cacheMetrics.request(keyPrefix, CacheMetrics.DIRECT, raw == null ? CacheMetrics.MISS : CacheMetrics.NULL_HIT);
+            return null;
+        }
+        cacheMetrics.request(keyPrefix, CacheMetrics.DIRECT, CacheMetrics.HIT);
+        return valueSerializer.deserialize(raw, type);
+    }
+
+    /**
+     * 异步读取任意对象
+     * @param key
+     * @param type 目标类型，支持泛型
+     * @return 不存在时结果为 null
+     * @param <T>
+     */
+    public <T> CompletableFuture<T> getAsync(String key, Type type) {
+        String keyPrefix = CacheMetrics.prefixOf(key);
+        return getRawAsync(keyPrefix, key).thenApplyAsync(raw -> {
+            if (raw == null || raw.length == 0) {
+                cacheMetrics.request(keyPrefix, CacheMetrics.DIRECT, raw == null ? CacheMetrics.MISS : CacheMetrics.NULL_HIT);
+                return null;
+            }
+            cacheMetrics.request(keyPrefix, CacheMetrics.DIRECT, CacheMetrics.HIT);
+            return valueSerializer.deserialize(raw, type);
+        }, CACHE_ASYNC_EXECUTOR);
+    }
+
+    /**
+     * 通过 Lettuce 异步连接读取原始字节，key 不存在时结果为 null，启用哈希桶存储的前缀从桶中读取字段
+     */
+    private CompletableFuture<byte[]> getRawAsync(String keyPrefix, String key) {
+        String[] bucket = bucketOf(key);
+        if (bucket == null) {
+            return cacheMetrics.redisAsync(keyPrefix, "get",
+                    () -> reactiveCacheRedisTemplate.opsForValue().get(key).toFuture());
+        }
+        return cacheMetrics.redisAsync(keyPrefix, "hget",
+                        () -> reactiveCacheRedisTemplate.<String, byte[]>opsForHash().get(bucket[0], bucket[1]).toFuture())
+                .thenApply(this::fromBucket);
+    }
+
+    /**
+     * 回源并写入逻辑过期缓存，用于手动刷新单条数据
+     * 先读取版本号再回源，回源期间缓存被删除过（数据被更新）时放弃写入，不会用旧数据覆盖新数据
+     * @param keyPrefix 缓存前缀
+     * @param id 业务 id
+     * @param dbFallback 回源查询方法，数据不存在时返回 null，写入空值
+     * @return 是否写入
+     */
+    public <R, ID> boolean refreshWithLogicalExpire(
+            String keyPrefix,
+            ID id,
+            Function<ID, R> dbFallback,
+            Long time,
+            TimeUnit unit) {
+        String key = keyPrefix + id;
+        byte[] version = cacheRedisTemplate.opsForValue().get(CACHE_VERSION_KEY + key);
+        R r = dbFallback.apply(id);
+        return setWithLogicalExpire(keyPrefix, key, r, time, unit, versionOf(version));
+    }
+
+    /**
+     * 按版本号写入逻辑过期缓存，回源之后版本号发生变化（缓存被删除过）时放弃写入
+     * @param value 为 null 时写入空值，空值按 CACHE_NULL_TTL 过期，不会一直占用内存
+     * @param version 回源前读取到的版本号
+     * @return 是否写入
+     */
+    private boolean setWithLogicalExpire(String keyPrefix, String key, Object value, Long time, TimeUnit unit, long version) {
+        Long written = cacheRedisTemplate.execute(
+                (RedisCallback<Long>) connection -> setLogicalRaw(connection, key, value, time, unit, version));
+        if (written == null || written != 1L) {
+            log.debug("回源期间数据已被更新，放弃写入，key: {}，version: {}", key, version);
+            cacheMetrics.rebuildRejected(keyPrefix, "stale_version");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 在给定连接上按版本号写入逻辑过期缓存，pipeline 中也可以使用；启用哈希桶存储的前缀写入桶中的字段
+     * @param value 为 null 时写入空值，空值按 CACHE_NULL_TTL 过期
+     * @param version 回源前读取到的版本号
+     * @return 写入返回 1，版本号已变化返回 0；pipeline 中返回 null
+     */
+    private Long setLogicalRaw(RedisConnection connection, String key, Object value, Long time, TimeUnit unit, long version) {
+        byte[] versionKey = toBytes(CACHE_VERSION_KEY + key);
+        byte[] versionArg = toBytes(String.valueOf(version));
+        long nullTtl = TimeUnit.MINUTES.toMillis(CACHE_NULL_TTL);
+        String[] bucket = bucketOf(key);
+        if (bucket == null) {
+            if (value == null) {
+                return connection.scriptingCommands().eval(toBytes(CACHE_CAS_SCRIPT.getScriptAsString()), ReturnType.INTEGER, 2,
+                        toBytes(key), versionKey, NULL_VALUE, versionArg, toBytes(String.valueOf(nullTtl)));
+            }
+            return connection.scriptingCommands().eval(toBytes(CACHE_CAS_SCRIPT.getScriptAsString()), ReturnType.INTEGER, 2,
+                    toBytes(key), versionKey, serializeLogical(value, time, unit, version), versionArg);
+        }
+        //逻辑过期的数据不过期，空值的过期时间记录在值的头部，读取时判断
+        long now = System.currentTimeMillis();
+        byte[] raw = value == null
+                ? valueSerializer.serializeEmpty(now + nullTtl)
+                : serializeLogical(value, time, unit, version);
+        return connection.scriptingCommands().eval(toBytes(CACHE_BUCKET_CAS_SCRIPT.getScriptAsString()), ReturnType.INTEGER, 2,
+                toBytes(bucket[0]), versionKey, toBytes(bucket[1]), raw, versionArg,
+                toBytes(String.valueOf(value == null ? nullTtl : 0)), toBytes(String.valueOf(now)));
+    }
+
+    /**
+     * 读取逻辑过期缓存的原始字节和版本号，一次往返；启用哈希桶存储的前缀从桶中读取字段
+     * @return [缓存值, 版本号]，缓存值为空值时是长度为 0 的数组
+     */
+    private List<byte[]> getLogicalRaw(String keyPrefix, String key) {
+        String[] bucket = bucketOf(key);
+        if (bucket == null) {
+            return cacheMetrics.redis(keyPrefix, "mget",
+                    () -> cacheRedisTemplate.opsForValue().multiGet(List.of(key, CACHE_VERSION_KEY + key)));
+        }
+        List<Object> results = cacheMetrics.redis(keyPrefix, "hget",
+                () -> cacheRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    connection.hashCommands().hGet(toBytes(bucket[0]), toBytes(bucket[1]));
+                    connection.stringCommands().get(toBytes(CACHE_VERSION_KEY + key));
+                    return null;
+                }));
+        return Arrays.asList(fromBucket((byte[]) results.get(0)), (byte[]) results.get(1));
+    }
+
+    /**
+     * 异步读取逻辑过期缓存的原始字节和版本号
+     * @return [缓存值, 版本号]
+     */
+    private CompletableFuture<List<byte[]>> getLogicalRawAsync(String keyPrefix, String key) {
+        if (bucketOf(key) == null) {
+            return cacheMetrics.redisAsync(keyPrefix, "mget",
+                    () -> reactiveCacheRedisTemplate.opsForValue().multiGet(List.of(key, CACHE_VERSION_KEY + key)).toFuture());
+        }
+        CompletableFuture<byte[]> version = reactiveCacheRedisTemplate.opsForValue().get(CACHE_VERSION_KEY + key).toFuture();
+        return getRawAsync(keyPrefix, key).thenCombine(version, (raw, v) -> Arrays.asList(raw, v));
+    }
+
+    /**
+     * 解析 MGET 结果中的版本号，不存在时为 0
+     * @param raws [缓存值, 版本号]
+     */
+    private static long versionOf(List<byte[]> raws) {
+        return versionOf(raws == null ? null : raws.get(1));
+    }
+
+    private static long versionOf(byte[] version) {
+        return version == null ? 0 : Long.parseLong(new String(version, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 序列化逻辑过期的 RedisData，逻辑过期时间加上随机抖动，避免同一批数据同时触发重建
+     */
+    private byte[] serializeLogical(Object value, Long time, TimeUnit unit, long version) {
+        RedisData<Object> redisData = new RedisData<>();
         redisData.setData(value);
-        //设置逻辑过期时间
-        redisData.setExpireTime(LocalDateTime.now().plusSeconds(unit.toSeconds(time)));
-        //将RedisData对象转换为JSON字符串存储到Redis中
-        stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(redisData));
+        redisData.setVersion(version);
+        redisData.setExpireTime(LocalDateTime.now().plus(jitterTtl(time, unit), ChronoUnit.MILLIS));
+        return valueSerializer.serializeLogical(redisData);
+    }
+
+    /**
+     * 批量回源并写入带有过期时间的缓存，用于穿透、互斥锁策略的预热，写入格式与 queryWithPassThrough 相同，启用哈希桶存储的前缀写入桶中
+     * @param keyPrefix 缓存前缀
+     * @param ids 业务 id
+     * @param dbBatchFallback 批量回源查询方法，返回 id 到数据的映射，不存在的 id 不写入
+     * @param time 缓存时间
+     * @param unit 时间单位
+     * @return 写入的条数
+     */
+    public <R, ID> int setBatch(
+            String keyPrefix,
+            List<ID> ids,
+            Function<List<ID>, Map<ID, R>> dbBatchFallback,
+            Long time,
+            TimeUnit unit) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        Map<ID, R> loaded = dbBatchFallback.apply(ids);
+        cacheRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (ID id : ids) {
+                R r = loaded.get(id);
+                if (r != null) {
+                    setRaw(connection, keyPrefix + id, r, jitterTtl(time, unit), 0);
+                }
+            }
+            return null;
+        });
+        return (int) ids.stream().filter(loaded::containsKey).count();
+    }
+
+    /**
+     * 批量回源并写入逻辑过期缓存，用于逻辑过期策略的预热，启用哈希桶存储的前缀写入桶中
+     * 先一次 MGET 读取所有版本号再回源，写入时按 key 比较版本号，回源期间被更新过的数据放弃写入
+     * @param keyPrefix 缓存前缀
+     * @param ids 业务 id
+     * @param dbBatchFallback 批量回源查询方法，返回 id 到数据的映射，不存在的 id 不写入
+     * @param time 逻辑过期时间
+     * @param unit 时间单位
+     * @return 写入的条数
+     */
+    public <R, ID> int setWithLogicalExpireBatch(
+            String keyPrefix,
+            List<ID> ids,
+            Function<List<ID>, Map<ID, R>> dbBatchFallback,
+            Long time,
+            TimeUnit unit) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        //1.回源前读取版本号
+        List<String> versionKeys = ids.stream().map(id -> CACHE_VERSION_KEY + keyPrefix + id).collect(Collectors.toList());
+        List<byte[]> versions = cacheRedisTemplate.opsForValue().multiGet(versionKeys);
+        //2.批量回源
+        Map<ID, R> loaded = dbBatchFallback.apply(ids);
+        //3.pipeline 按版本号写入
+        List<Object> results = cacheRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (int i = 0; i < ids.size(); i++) {
+                R r = loaded.get(ids.get(i));
+                if (r != null) {
+                    setLogicalRaw(connection, keyPrefix + ids.get(i), r, time, unit,
+                            versionOf(versions == null ? null : versions.get(i)));
+                }
+            }
+            return null;
+        });
+        int written = 0;
+        for (Object result : results) {
+            if (result instanceof Long n && n == 1L) {
+                written++;
+            } else {
+                cacheMetrics.rebuildRejected(keyPrefix, "stale_version");
+            }
+        }
+        return written;
     }
 
     /**
@@ -77,38 +734,225 @@ public class CacheClient {
     public <R,ID> R queryWithPassThrough(
             String keyPrefix,
             ID id,
-            Class<R> type,
+            Type type,
             Function<ID,R> dbFallback,
             Long time,
             TimeUnit unit) {
 
         String key = keyPrefix + id;
-        //1.从redis中查询商铺信息
-        String json = stringRedisTemplate.opsForValue().get(key);
+        //0.先查本地一级缓存
+        R local = getLocal(keyPrefix, key);
+        if (local != null) {
+            cacheMetrics.request(keyPrefix, CacheMetrics.PASS_THROUGH, CacheMetrics.LOCAL_HIT);
+            return local;
+        }
+        //0.1布隆过滤器判断不存在，直接返回，不访问 Redis 和数据库
+        if (!mightContain(keyPrefix, id)) {
+            cacheMetrics.request(keyPrefix, CacheMetrics.PASS_THROUGH, CacheMetrics.BLOOM_REJECT);
+            return null;
+        }
+        //1.从redis中查询商铺信息，Redis 不可用时降级
+        byte[] raw;
+        try {
+            raw = circuitBreaker.execute(() -> getRaw(keyPrefix, key));
+        } catch (RuntimeException e) {
+            return degrade(e, keyPrefix, CacheMetrics.PASS_THROUGH, id, dbFallback);
+        }
+        return passThroughFromRaw(keyPrefix, id, raw, type, dbFallback, time, unit);
+    }
+
+    /**
+     * 异步查询缓存，解决缓存穿透问题，Redis 查询使用异步连接，不占用调用线程
+     * @return 查询结果，回源或写回失败时异常完成
+     */
+    public <R, ID> CompletableFuture<R> queryWithPassThroughAsync(
+            String keyPrefix,
+            ID id,
+            Type type,
+            Function<ID, R> dbFallback,
+            Long time,
+            TimeUnit unit) {
+        String key = keyPrefix + id;
+        //0.先查本地一级缓存
+        R local = getLocal(keyPrefix, key);
+        if (local != null) {
+            cacheMetrics.request(keyPrefix, CacheMetrics.PASS_THROUGH, CacheMetrics.LOCAL_HIT);
+            return CompletableFuture.completedFuture(local);
+        }
+        //0.1布隆过滤器判断不存在，直接返回
+        if (!mightContain(keyPrefix, id)) {
+            cacheMetrics.request(keyPrefix, CacheMetrics.PASS_THROUGH, CacheMetrics.BLOOM_REJECT);
+            return CompletableFuture.completedFuture(null);
+        }
+        //1.异步查询 Redis，结果在虚拟线程上处理，Redis 不可用时降级
+        return circuitBreaker.executeAsync(() -> getRawAsync(keyPrefix, key)).handleAsync((raw, e) -> e == null
+                ? passThroughFromRaw(keyPrefix, id, raw, type, dbFallback, time, unit)
+                : degrade(e, keyPrefix, CacheMetrics.PASS_THROUGH, id, dbFallback), CACHE_ASYNC_EXECUTOR);
+    }
+
+    /**
+     * 穿透策略：根据从 Redis 读到的值返回结果，未命中时回源，同步和异步查询共用
+     */
+    private <R, ID> R passThroughFromRaw(
+            String keyPrefix,
+            ID id,
+            byte[] raw,
+            Type type,
+            Function<ID, R> dbFallback,
+            Long time,
+            TimeUnit unit) {
+        String key = keyPrefix + id;
+        //1.1切换策略前由逻辑过期策略写入的值，按未命中处理并覆盖
+        if (raw != null && valueSerializer.isLogical(raw)) {
+            raw = null;
+        }
         //2.判断是否存在
-        if( StrUtil.isNotBlank(json)) {
+        if (raw != null && raw.length > 0) {
             //2.1如果真实存在，直接返回
-            return JSONUtil.toBean(json, type);
+            cacheMetrics.request(keyPrefix, CacheMetrics.PASS_THROUGH, CacheMetrics.HIT);
+            R r = valueSerializer.deserialize(raw, type);
+            putLocal(keyPrefix, key, r);
+            //2.2快要过期时按概率提前在后台刷新
+            if (shouldRefreshEarly(raw)) {
+                refreshAsync(keyPrefix, id, dbFallback, time, unit);
+            }
+            return r;
         }
         //3.判断命中的是否是空值
-        if (json != null) {
+        if (raw != null) {
             //3.1.如果命中的是空值""，返回错误信息
+            cacheMetrics.request(keyPrefix, CacheMetrics.PASS_THROUGH, CacheMetrics.NULL_HIT);
             return null;
         }
         //4..如果不存在，根据id查询数据库
-        R r = dbFallback.apply(id);
+        cacheMetrics.request(keyPrefix, CacheMetrics.PASS_THROUGH, CacheMetrics.MISS);
+        long begin = System.currentTimeMillis();
+        R r = cacheMetrics.load(keyPrefix, CacheMetrics.PASS_THROUGH, () -> dbFallback.apply(id));
         //5..如果数据库中不存在该商铺信息
         if(r == null){
             //5.1将空值写入redis，设置有效时间，避免缓存穿透
-            stringRedisTemplate.opsForValue().set(key, "",CACHE_NULL_TTL, TimeUnit.MINUTES);
+            setNull(key);
             //5.2返回错误信息
             return null;
         }
         //6.数据库中存在，则将数据写入redis，并设置有效时间，并返回商铺信息
-        this.set(key, r, time, unit);
+        this.set(key, r, time, unit, Math.max(1, System.currentTimeMillis() - begin));
+        putLocal(keyPrefix, key, r);
         return r;
     }
 
+    /**
+     * 批量查询缓存，一次 MGET 查询所有 key，未命中的 id 合并为一次数据库查询，并用 pipeline 写回 Redis
+     * @param keyPrefix redis key 前缀
+     * @param ids 业务 id 列表
+     * @param type 返回类型
+     * @param dbBatchFallback 批量回源查询方法，返回 id 到数据的映射，不存在的 id 不放入映射
+     * @param time 缓存时间
+     * @param unit 时间单位
+     * @return 查询结果，顺序与 ids 一致，不存在的数据会被跳过
+     * @param <R> 返回类型
+     * @param <ID> id 类型
+     */
+    public <R, ID> List<R> queryBatchWithPassThrough(
+            String keyPrefix,
+            List<ID> ids,
+            Class<R> type,
+            Function<List<ID>, Map<ID, R>> dbBatchFallback,
+            Long time,
+            TimeUnit unit) {
+        Map<ID, R> found = new HashMap<>(ids.size());
+        //1.先查本地一级缓存，并用布隆过滤器过滤掉一定不存在的 id
+        List<ID> redisIds = new ArrayList<>(ids.size());
+        for (ID id : ids) {
+            R local = getLocal(keyPrefix, keyPrefix + id);
+            if (local != null) {
+                found.put(id, local);
+            } else if (mightContain(keyPrefix, id)) {
+                redisIds.add(id);
+            }
+        }
+        cacheMetrics.request(keyPrefix, CacheMetrics.BATCH, CacheMetrics.LOCAL_HIT, found.size());
+        cacheMetrics.request(keyPrefix, CacheMetrics.BATCH, CacheMetrics.BLOOM_REJECT, ids.size() - found.size() - redisIds.size());
+        //2.一次 MGET 查询 Redis
+        List<ID> missIds = new ArrayList<>();
+        if (!redisIds.isEmpty()) {
+            List<String> keys = redisIds.stream().map(id -> keyPrefix + id).collect(Collectors.toList());
+            List<byte[]> raws;
+            try {
+                raws = circuitBreaker.execute(() -> multiGetRaw(keyPrefix, keys));
+            } catch (RuntimeException e) {
+                //Redis 不可用时降级，不再写回 Redis
+                found.putAll(degradeBatch(e, keyPrefix, redisIds, dbBatchFallback));
+                return inOrder(ids, found);
+            }
+            int nullHits = 0;
+            for (int i = 0; i < redisIds.size(); i++) {
+                byte[] raw = raws == null ? null : raws.get(i);
+                if (raw != null && valueSerializer.isLogical(raw)) {
+                    raw = null;
+                }
+                if (raw != null && raw.length > 0) {
+                    R r = valueSerializer.deserialize(raw, type);
+                    putLocal(keyPrefix, keys.get(i), r);
+                    found.put(redisIds.get(i), r);
+                    if (shouldRefreshEarly(raw)) {
+                        refreshAsync(keyPrefix, redisIds.get(i),
+                                (ID refreshId) -> dbBatchFallback.apply(List.of(refreshId)).get(refreshId), time, unit);
+                    }
+                } else if (raw == null) {
+                    //3.空值说明数据库中不存在，只有真正未命中的才需要回源
+                    missIds.add(redisIds.get(i));
+                } else {
+                    nullHits++;
+                }
+            }
+            cacheMetrics.request(keyPrefix, CacheMetrics.BATCH, CacheMetrics.NULL_HIT, nullHits);
+            cacheMetrics.request(keyPrefix, CacheMetrics.BATCH, CacheMetrics.MISS, missIds.size());
+            cacheMetrics.request(keyPrefix, CacheMetrics.BATCH, CacheMetrics.HIT, redisIds.size() - nullHits - missIds.size());
+        }
+        //4.未命中的 id 合并为一次数据库查询
+        if (!missIds.isEmpty()) {
+            long begin = System.currentTimeMillis();
+            Map<ID, R> loaded = cacheMetrics.load(keyPrefix, CacheMetrics.BATCH, () -> dbBatchFallback.apply(missIds));
+            long delta = Math.max(1, System.currentTimeMillis() - begin);
+            //5.pipeline 写回 Redis，数据库中不存在的写入空值，避免缓存穿透
+            cacheRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (ID id : missIds) {
+                    String key = keyPrefix + id;
+                    R r = loaded.get(id);
+                    if (r == null) {
+                        setRaw(connection, key, null, TimeUnit.MINUTES.toMillis(CACHE_NULL_TTL), 0);
+                    } else {
+                        setRaw(connection, key, r, jitterTtl(time, unit), delta);
+                        putLocal(keyPrefix, key, r);
+                        found.put(id, r);
+                    }
+                }
+                return null;
+            });
+        }
+        //6.按照传入的 id 顺序返回
+        return inOrder(ids, found);
+    }
+
+    /**
+     * 按照 ids 的顺序返回查询结果，不存在的数据会被跳过
+     */
+    private static <R, ID> List<R> inOrder(List<ID> ids, Map<ID, R> found) {
+        List<R> result = new ArrayList<>(ids.size());
+        for (ID id : ids) {
+            R r = found.get(id);
+            if (r != null) {
+                result.add(r);
+            }
+        }
+        return result;
+    }
+
+    private static byte[] toBytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
     public <R,ID> R queryWithLogicalExpire(
             String keyPrefix,
             ID id,
@@ -117,51 +961,92 @@ public class CacheClient {
             Long time,
             TimeUnit unit){
         String key = keyPrefix + id;
-        //1.从redis中查询商铺信息
-        String json = stringRedisTemplate.opsForValue().get(key);
-        //2.判断是否存在
-        if(StrUtil.isBlank(json)){
-            //2.1如果不存在，直接返回null
+        //1.从redis中查询商铺信息，同时读取版本号，一次往返，Redis 不可用时降级
+        List<byte[]> raws;
+        try {
+            raws = circuitBreaker.execute(() -> getLogicalRaw(keyPrefix, key));
+        } catch (RuntimeException e) {
+            return degrade(e, keyPrefix, CacheMetrics.LOGICAL, id, dbFallback);
+        }
+        return logicalExpireFromRaw(keyPrefix, id, raws, type, dbFallback, time, unit);
+    }
+
+    /**
+     * 异步查询逻辑过期缓存，Redis 查询使用异步连接，不占用调用线程
+     * @return 查询结果，已过期时返回旧值并在后台重建
+     */
+    public <R, ID> CompletableFuture<R> queryWithLogicalExpireAsync(
+            String keyPrefix,
+            ID id,
+            Type type,
+            Function<ID, R> dbFallback,
+            Long time,
+            TimeUnit unit) {
+        String key = keyPrefix + id;
+        return circuitBreaker.executeAsync(() -> getLogicalRawAsync(keyPrefix, key))
+                .handleAsync((raws, e) -> e == null
+                        ? logicalExpireFromRaw(keyPrefix, id, raws, type, dbFallback, time, unit)
+                        : degrade(e, keyPrefix, CacheMetrics.LOGICAL, id, dbFallback), CACHE_ASYNC_EXECUTOR);
+    }
+
+    /**
+     * 逻辑过期策略：根据从 Redis 读到的值返回结果，同步和异步查询共用
+     * @param raws [缓存值, 版本号]
+     */
+    private <R, ID> R logicalExpireFromRaw(
+            String keyPrefix,
+            ID id,
+            List<byte[]> raws,
+            Type type,
+            Function<ID, R> dbFallback,
+            Long time,
+            TimeUnit unit) {
+        String key = keyPrefix + id;
+        byte[] raw = raws == null ? null : raws.get(0);
+        long version = versionOf(raws);
+        //2.命中空值，说明数据库中不存在
+        if (raw != null && raw.length == 0) {
+            cacheMetrics.request(keyPrefix, CacheMetrics.LOGICAL, CacheMetrics.NULL_HIT);
             return null;
         }
-        //3.如果命中，需要先将json反序列化为RedisData对象
-        RedisData<R> redisData= JSON.parseObject(json, type);
+        //2.1判断是否存在，切换策略前由其他策略写入的值也按未命中处理并覆盖
+        if (raw == null || !valueSerializer.isLogical(raw)) {
+            //2.2如果不存在（未预热），回源数据库并写入逻辑过期缓存，数据库中不存在时写入空值，本节点的并发请求合并为一次
+            cacheMetrics.request(keyPrefix, CacheMetrics.LOGICAL, CacheMetrics.MISS);
+            return singleFlight.execute(key, () -> {
+                R loaded = cacheMetrics.load(keyPrefix, CacheMetrics.LOGICAL, () -> dbFallback.apply(id));
+                this.setWithLogicalExpire(keyPrefix, key, loaded, time, unit, version);
+                return loaded;
+            });
+        }
+        //3.如果命中，需要先反序列化为RedisData对象
+        RedisData<R> redisData = valueSerializer.deserialize(raw, type);
         R r = redisData.getData();
         LocalDateTime expireTime = redisData.getExpireTime();
         //4.判断是否过期
         if(expireTime.isAfter(LocalDateTime.now())){
             //4.1如果未过期，直接返回商铺信息
+            cacheMetrics.request(keyPrefix, CacheMetrics.LOGICAL, CacheMetrics.HIT);
             return r;
         }
+        cacheMetrics.request(keyPrefix, CacheMetrics.LOGICAL, CacheMetrics.STALE_HIT);
         //如果过期，进行缓存重建
         //5.缓存重建
-        //5.1获取互斥锁
-        String lockKey = LOCK_SHOP_KEY + id;
-        boolean isLock = tryLock(lockKey);
-        //5.2判断是否获取成功
-        if (isLock) {
-            // 加锁成功，开启异步线程重建缓存
-            CACHE_REBUILD_EXECUTOR.submit(() -> {
-                try {
-                    // 再次判断缓存是否过期，避免重复重建
-                    String json2 = stringRedisTemplate.opsForValue().get(key);
-                    //RedisData<R> redisData2 =  JSONUtil.toBean(json2, new TypeReference<RedisData<R>>() {}, false);
-                    RedisData<R> redisData2= JSON.parseObject(json2, new TypeReference<RedisData<R>>() {});
-                    assert redisData2 != null;
-                    if (redisData2.getExpireTime().isBefore(LocalDateTime.now())) {
-                        //重新查询数据库
-                        R r2 = dbFallback.apply(id);
-                        //写入Redis
-                        this.setWithLogicalExpire(key, r2, time, unit);
-                    }
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
-                } finally {
-                    // 异步任务执行完释放锁
-                    unlock(lockKey);
-                }
-            });
-        }
+        //5.1获取互斥锁，获取成功后交给重建调度器异步重建，调度器繁忙或退避时放弃本次重建
+        rebuildAsync(keyPrefix, key, LOCK_CACHE_KEY + key, () -> {
+            // 再次判断缓存是否过期，避免重复重建，同时读取回源前的版本号
+            List<byte[]> raws2 = getLogicalRaw(keyPrefix, key);
+            byte[] raw2 = raws2 == null ? null : raws2.get(0);
+            RedisData<?> redisData2 = raw2 == null || raw2.length == 0 ? null : valueSerializer.deserialize(raw2, RedisData.class);
+            if (redisData2 == null || redisData2.getExpireTime() == null
+                    || redisData2.getExpireTime().isBefore(LocalDateTime.now())) {
+                long version2 = versionOf(raws2);
+                //重新查询数据库
+                R r2 = cacheMetrics.load(keyPrefix, CacheMetrics.LOGICAL, () -> dbFallback.apply(id));
+                //写入Redis，回源期间数据被更新过则放弃；数据已被删除时写入空值
+                this.setWithLogicalExpire(keyPrefix, key, r2, time, unit, version2);
+            }
+        });
         //5.4直接返回旧的商铺信息
         return r;
     }
@@ -180,55 +1065,399 @@ public class CacheClient {
     public <R, ID> R queryWithMutex(
             String keyPrefix,
             ID id,
-            Class<R> type,
+            Type type,
             Function<ID, R> dbFallback,
             Long time,
             TimeUnit unit) {
 
         String key = keyPrefix + id;
-        // 1. 查询 Redis 缓存
-        String json = stringRedisTemplate.opsForValue().get(key);
-        // 2. 判断是否命中缓存
-        if (StrUtil.isNotBlank(json)) {
-            return JSON.parseObject(json, type);
+        // 0. 查询本地一级缓存
+        R local = getLocal(keyPrefix, key);
+        if (local != null) {
+            cacheMetrics.request(keyPrefix, CacheMetrics.MUTEX, CacheMetrics.LOCAL_HIT);
+            return local;
         }
-        // 3. 判断是否是空值
-        if (json != null) {
+        // 0.1 布隆过滤器判断不存在，直接返回
+        if (!mightContain(keyPrefix, id)) {
+            cacheMetrics.request(keyPrefix, CacheMetrics.MUTEX, CacheMetrics.BLOOM_REJECT);
             return null;
         }
-        // 4. 缓存未命中，尝试获取互斥锁
-        String lockKey = LOCK_SHOP_KEY + id;
-        R r = null;
+        // 1. 查询 Redis 缓存，Redis 不可用时降级
+        byte[] raw;
         try {
-            boolean isLock = tryLock(lockKey);
-            if (!isLock) {
-                // 获取锁失败，休眠一段时间后重试
-                Thread.sleep(50);
-                return queryWithMutex(keyPrefix, id, type, dbFallback, time, unit);
+            raw = circuitBreaker.execute(() -> getRaw(keyPrefix, key));
+        } catch (RuntimeException e) {
+            return degrade(e, keyPrefix, CacheMetrics.MUTEX, id, dbFallback);
+        }
+        return mutexFromRaw(keyPrefix, id, raw, type, dbFallback, time, unit);
+    }
+
+    /**
+     * 异步查询缓存，使用互斥锁解决缓存击穿问题，Redis 查询使用异步连接，不占用调用线程
+     * 未命中时等待锁和回源都在虚拟线程上进行
+     * @return 查询结果
+     */
+    public <R, ID> CompletableFuture<R> queryWithMutexAsync(
+            String keyPrefix,
+            ID id,
+            Type type,
+            Function<ID, R> dbFallback,
+            Long time,
+            TimeUnit unit) {
+        String key = keyPrefix + id;
+        // 0. 查询本地一级缓存
+        R local = getLocal(keyPrefix, key);
+        if (local != null) {
+            cacheMetrics.request(keyPrefix, CacheMetrics.MUTEX, CacheMetrics.LOCAL_HIT);
+            return CompletableFuture.completedFuture(local);
+        }
+        // 0.1 布隆过滤器判断不存在，直接返回
+        if (!mightContain(keyPrefix, id)) {
+            cacheMetrics.request(keyPrefix, CacheMetrics.MUTEX, CacheMetrics.BLOOM_REJECT);
+            return CompletableFuture.completedFuture(null);
+        }
+        // 1. 异步查询 Redis，结果在虚拟线程上处理，Redis 不可用时降级
+        return circuitBreaker.executeAsync(() -> getRawAsync(keyPrefix, key)).handleAsync((raw, e) -> e == null
+                ? mutexFromRaw(keyPrefix, id, raw, type, dbFallback, time, unit)
+                : degrade(e, keyPrefix, CacheMetrics.MUTEX, id, dbFallback), CACHE_ASYNC_EXECUTOR);
+    }
+
+    /**
+     * 互斥锁策略：根据从 Redis 读到的值返回结果，未命中时加锁回源，同步和异步查询共用
+     */
+    private <R, ID> R mutexFromRaw(
+            String keyPrefix,
+            ID id,
+            byte[] raw,
+            Type type,
+            Function<ID, R> dbFallback,
+            Long time,
+            TimeUnit unit) {
+        String key = keyPrefix + id;
+        // 1.1 切换策略前由逻辑过期策略写入的值，按未命中处理并覆盖
+        if (raw != null && valueSerializer.isLogical(raw)) {
+            raw = null;
+        }
+        // 2. 判断是否命中缓存
+        if (raw != null && raw.length > 0) {
+            cacheMetrics.request(keyPrefix, CacheMetrics.MUTEX, CacheMetrics.HIT);
+            R cached = valueSerializer.deserialize(raw, type);
+            putLocal(keyPrefix, key, cached);
+            // 快要过期时按概率提前在后台刷新
+            if (shouldRefreshEarly(raw)) {
+                refreshAsync(keyPrefix, id, dbFallback, time, unit);
             }
+            return cached;
+        }
+        // 3. 判断是否是空值
+        if (raw != null) {
+            cacheMetrics.request(keyPrefix, CacheMetrics.MUTEX, CacheMetrics.NULL_HIT);
+            return null;
+        }
+        cacheMetrics.request(keyPrefix, CacheMetrics.MUTEX, CacheMetrics.MISS);
+        // 4. 缓存未命中，同一 JVM 内的并发请求合并为一次加载
+        return singleFlight.execute(key, () -> loadWithMutex(keyPrefix, id, type, dbFallback, time, unit));
+    }
 
-            // 获取锁成功，再次查询 Redis，避免重复构建
-            String cacheJson = stringRedisTemplate.opsForValue().get(key);
-            if (StrUtil.isNotBlank(cacheJson)) {
-                return JSON.parseObject(cacheJson, type);
+    /**
+     * 互斥锁重建缓存：获取到锁的节点负责查库写缓存，其余节点等待重建完成的通知后再读 Redis
+     */
+    private <R, ID> R loadWithMutex(
+            String keyPrefix,
+            ID id,
+            Type type,
+            Function<ID, R> dbFallback,
+            Long time,
+            TimeUnit unit) {
+        String key = keyPrefix + id;
+        String lockKey = LOCK_CACHE_KEY + key;
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(LOCK_CACHE_TTL);
+        while (System.currentTimeMillis() < deadline) {
+            // 先登记等待通知，再检查缓存，避免在两步之间错过通知
+            CompletableFuture<Void> signal = rebuildSignals.computeIfAbsent(key, k -> new CompletableFuture<>());
+            byte[] cacheRaw = getRaw(keyPrefix, key);
+            if (cacheRaw != null && valueSerializer.isLogical(cacheRaw)) {
+                cacheRaw = null;
+            }
+            if (cacheRaw != null && cacheRaw.length > 0) {
+                R cached = valueSerializer.deserialize(cacheRaw, type);
+                putLocal(keyPrefix, key, cached);
+                return cached;
+            }
+            if (cacheRaw != null) {
+                return null;
             }
+            if (tryLock(lockKey)) {
+                try {
+                    return rebuildWithLock(keyPrefix, id, dbFallback, time, unit);
+                } finally {
+                    // 释放锁，并通知其他节点重建完成
+                    unlock(lockKey);
+                    stringRedisTemplate.convertAndSend(CACHE_REBUILT_CHANNEL, key);
+                }
+            }
+            // 获取锁失败，等待持有锁的节点重建完成的通知，超时后重新尝试
+            long waitBegin = System.nanoTime();
+            try {
+                signal.get(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException | ExecutionException e) {
+                rebuildSignals.remove(key, signal);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } finally {
+                cacheMetrics.lockWait(keyPrefix, System.nanoTime() - waitBegin);
+            }
+        }
+        // 等待超过锁的有效期仍未重建完成，直接查询数据库
+        log.warn("等待缓存重建超时，直接查询数据库，key: {}", key);
+        return cacheMetrics.load(keyPrefix, CacheMetrics.MUTEX, () -> dbFallback.apply(id));
+    }
 
-            // 查询数据库
-            r = dbFallback.apply(id);
+    /**
+     * 持有互斥锁时重建缓存
+     */
+    private <R, ID> R rebuildWithLock(
+            String keyPrefix,
+            ID id,
+            Function<ID, R> dbFallback,
+            Long time,
+            TimeUnit unit) {
+        String key = keyPrefix + id;
+        // 查询数据库
+        long begin = System.currentTimeMillis();
+        boolean success = false;
+        try {
+            R r = cacheMetrics.load(keyPrefix, CacheMetrics.MUTEX, () -> dbFallback.apply(id));
             if (r == null) {
                 // 数据库不存在，将空值写入 Redis 防止穿透
-                stringRedisTemplate.opsForValue().set(key, "", CACHE_NULL_TTL, TimeUnit.MINUTES);
-                return null;
+                setNull(key);
+            } else {
+                // 写入缓存
+                this.set(key, r, time, unit, Math.max(1, System.currentTimeMillis() - begin));
+                putLocal(keyPrefix, key, r);
             }
-            // 写入缓存
-            this.set(key, r, time, unit);
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
+            success = true;
+            return r;
         } finally {
-            // 释放锁
-            unlock(lockKey);
+            cacheMetrics.rebuild(keyPrefix, TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() - begin), success);
         }
-        return r;
+    }
+
+    /**
+     * 删除缓存，并通知所有节点清除本地一级缓存
+     * @param key 缓存 key
+     */
+    public void delete(String key) {
+        deleteAll(List.of(key));
+    }
+
+    /**
+     * 批量删除缓存，所有命令通过一次 pipeline 发送：
+     * UNLINK 缓存（哈希桶中的数据 HDEL 字段）、版本号加一（正在进行的重建写入时发现版本号变化会放弃写入）、
+     * 通知所有节点清除本地缓存
+     * @param keys 缓存 key
+     */
+    public void deleteAll(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        boolean broadcast = hasLocalTier();
+        byte[] channel = toBytes(CACHE_INVALIDATE_CHANNEL);
+        cacheRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            List<byte[]> unlinkKeys = new ArrayList<>(keys.size());
+            for (String key : keys) {
+                String[] bucket = bucketOf(key);
+                if (bucket == null) {
+                    unlinkKeys.add(toBytes(key));
+                } else {
+                    connection.hashCommands().hDel(toBytes(bucket[0]), toBytes(bucket[1]));
+                }
+            }
+            if (!unlinkKeys.isEmpty()) {
+                connection.keyCommands().unlink(unlinkKeys.toArray(byte[][]::new));
+            }
+            for (String key : keys) {
+                byte[] versionKey = toBytes(CACHE_VERSION_KEY + key);
+                connection.stringCommands().incr(versionKey);
+                connection.keyCommands().expire(versionKey, TimeUnit.DAYS.toSeconds(CACHE_VERSION_TTL));
+                if (broadcast) {
+                    connection.publish(channel, toBytes(key));
+                }
+            }
+            return null;
+        });
+        keys.forEach(this::evictLocal);
+    }
+
+    /**
+     * 初始化某个前缀的布隆过滤器，未在配置中声明的前缀不会启用，也不会调用 idsLoader
+     * @param keyPrefix 缓存 key 前缀
+     * @param idsLoader 加载全部已存在的 id
+     */
+    public void initBloomFilter(String keyPrefix, Supplier<? extends Iterable<?>> idsLoader) {
+        CacheProperties.Bloom config = cacheProperties.getBloom().get(keyPrefix);
+        if (config == null) {
+            return;
+        }
+        CacheBloomFilter filter = new CacheBloomFilter(BLOOM_FILTER_KEY + keyPrefix,
+                config.getExpectedInsertions(), config.getFpp(), config.isRedisOnly(), stringRedisTemplate);
+        //先合并 Redis 中已有的位，再用数据库中的 id 补全
+        filter.refreshFromRedis();
+        filter.putAll(idsLoader.get());
+        bloomFilters.put(keyPrefix, filter);
+        if (!config.isRedisOnly()) {
+            long interval = config.getRefreshInterval().toMillis();
+            BLOOM_REFRESH_EXECUTOR.scheduleWithFixedDelay(() -> {
+                try {
+                    filter.refreshFromRedis();
+                } catch (Exception e) {
+                    log.error("同步布隆过滤器失败，keyPrefix: {}", keyPrefix, e);
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS);
+        }
+        log.info("布隆过滤器初始化完成，keyPrefix: {}", keyPrefix);
+    }
+
+    /**
+     * 新增数据后加入布隆过滤器，并广播给其他节点
+     * @param keyPrefix 缓存 key 前缀
+     * @param id 业务 id
+     */
+    public void addToBloomFilter(String keyPrefix, Object id) {
+        CacheBloomFilter filter = bloomFilters.get(keyPrefix);
+        if (filter == null) {
+            return;
+        }
+        filter.put(id);
+        stringRedisTemplate.convertAndSend(BLOOM_FILTER_CHANNEL, keyPrefix + "#" + id);
+    }
+
+    /**
+     * 布隆过滤器判断 id 是否可能存在，未启用布隆过滤器的前缀总是返回 true
+     */
+    private boolean mightContain(String keyPrefix, Object id) {
+        CacheBloomFilter filter = bloomFilters.get(keyPrefix);
+        return filter == null || filter.mightContain(id);
+    }
+
+    /**
+     * Redis 不可用时的降级：优先返回本节点保存的旧数据，没有时限流查询数据库，结果不写回 Redis
+     * @param e 访问 Redis 的异常，不是 Redis 不可用导致的异常会继续抛出
+     * @return 查询结果
+     */
+    @SuppressWarnings("unchecked")
+    private <R, ID> R degrade(Throwable e, String keyPrefix, String strategy, ID id, Function<ID, R> dbFallback) {
+        if (!RedisCircuitBreaker.isRedisFailure(e)) {
+            throw e instanceof RuntimeException ? (RuntimeException) e : new CompletionException(e);
+        }
+        String key = keyPrefix + id;
+        //1.本节点最近读到的数据
+        R stale = staleCopies == null ? null : (R) staleCopies.getIfPresent(key);
+        if (stale != null) {
+            cacheMetrics.request(keyPrefix, strategy, CacheMetrics.STALE_COPY);
+            return stale;
+        }
+        //2.直接查询数据库
+        cacheMetrics.request(keyPrefix, strategy, CacheMetrics.DEGRADED);
+        return loadDegraded(keyPrefix, () -> dbFallback.apply(id));
+    }
+
+    /**
+     * 批量查询的降级，与 degrade 相同
+     * @return id 到数据的映射，不存在的 id 不放入映射
+     */
+    @SuppressWarnings("unchecked")
+    private <R, ID> Map<ID, R> degradeBatch(Throwable e, String keyPrefix, List<ID> ids, Function<List<ID>, Map<ID, R>> dbBatchFallback) {
+        if (!RedisCircuitBreaker.isRedisFailure(e)) {
+            throw e instanceof RuntimeException ? (RuntimeException) e : new CompletionException(e);
+        }
+        Map<ID, R> found = new HashMap<>(ids.size());
+        List<ID> missIds = new ArrayList<>();
+        for (ID id : ids) {
+            R stale = staleCopies == null ? null : (R) staleCopies.getIfPresent(keyPrefix + id);
+            if (stale != null) {
+                found.put(id, stale);
+            } else {
+                missIds.add(id);
+            }
+        }
+        cacheMetrics.request(keyPrefix, CacheMetrics.BATCH, CacheMetrics.STALE_COPY, found.size());
+        cacheMetrics.request(keyPrefix, CacheMetrics.BATCH, CacheMetrics.DEGRADED, missIds.size());
+        if (!missIds.isEmpty()) {
+            found.putAll(loadDegraded(keyPrefix, () -> dbBatchFallback.apply(missIds)));
+        }
+        return found;
+    }
+
+    /**
+     * Redis 不可用时查询数据库，同时查询的请求数有上限，避免所有请求都压到数据库上
+     */
+    private <T> T loadDegraded(String keyPrefix, Supplier<T> loader) {
+        boolean acquired;
+        try {
+            acquired = degradedPermits.tryAcquire(
+                    cacheProperties.getBreaker().getDbWait().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待数据库查询名额被中断", ie);
+        }
+        if (!acquired) {
+            throw new IllegalStateException("Redis 不可用，数据库查询繁忙，请稍后再试");
+        }
+        try {
+            return cacheMetrics.load(keyPrefix, CacheMetrics.DEGRADED, loader);
+        } finally {
+            degradedPermits.release();
+        }
+    }
+
+    /**
+     * 从本地一级缓存中读取
+     */
+    @SuppressWarnings("unchecked")
+    private <R> R getLocal(String keyPrefix, String key) {
+        //每次读取都计入热点统计，包括命中本地副本的读取，否则热点会因为不再访问 Redis 而被降级
+        hotKeyDetector.record(key);
+        Cache<String, Object> cache = localCaches.get(keyPrefix);
+        R r = cache == null ? null : (R) cache.getIfPresent(key);
+        return r != null ? r : hotKeyDetector.getReplica(key);
+    }
+
+    /**
+     * 写入本地一级缓存
+     */
+    private void putLocal(String keyPrefix, String key, Object value) {
+        Cache<String, Object> cache = localCaches.get(keyPrefix);
+        if (cache != null && value != null) {
+            cache.put(key, value);
+        }
+        if (staleCopies != null && value != null) {
+            staleCopies.put(key, value);
+        }
+        hotKeyDetector.putReplica(key, value);
+    }
+
+    /**
+     * 清除本地一级缓存中的 key
+     */
+    private void evictLocal(String key) {
+        localCaches.forEach((prefix, cache) -> {
+            if (key.startsWith(prefix)) {
+                cache.invalidate(key);
+            }
+        });
+        hotKeyDetector.evictReplica(key);
+        if (staleCopies != null) {
+            staleCopies.invalidate(key);
+        }
+    }
+
+    /**
+     * 是否有本地缓存（一级缓存、热点副本或熔断用的旧数据），有时删除缓存需要广播给所有节点
+     */
+    private boolean hasLocalTier() {
+        return !localCaches.isEmpty() || hotKeyDetector.isEnabled() || staleCopies != null;
     }
 
     /**
@@ -237,7 +1466,7 @@ public class CacheClient {
      * @return 是否获取成功
      */
     private boolean tryLock(String key) {
-        Boolean flag = stringRedisTemplate.opsForValue().setIfAbsent(key,"1", LOCK_SHOP_TTL, TimeUnit.SECONDS);
+        Boolean flag = stringRedisTemplate.opsForValue().setIfAbsent(key,"1", LOCK_CACHE_TTL, TimeUnit.SECONDS);
         return BooleanUtil.isTrue(flag);
     }
 
@@ -0,0 +1,38 @@
+package com.hmdp.utils;
+
+import java.lang.reflect.Type;
+
+/**
+ * 缓存值编解码器，实现类注册为 Spring Bean 即可通过 hmdp.cache.codec 选用
+ * @author Ace
+ */
+public interface CacheCodec {
+
+    /**
+     * 编码器编号，写入缓存值的头部，读取时据此选择编码器，已使用的编号不能修改
+     * @return 编号
+     */
+    byte id();
+
+    /**
+     * 编码器名称，用于配置
+     * @return 名称
+     */
+    String name();
+
+    /**
+     * 编码
+     * @param value 任意对象
+     * @return 字节数组
+     */
+    byte[] encode(Object value);
+
+    /**
+     * 解码
+     * @param bytes 字节数组
+     * @param type 目标类型
+     * @return 对象
+     * @param <T> 目标类型
+     */
+    <T> T decode(byte[] bytes, Type type);
+}
@@ -0,0 +1,115 @@
+package com.hmdp.utils;
+
+import com.hmdp.config.CacheProperties;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存失效：
+ * 1.在事务中调用时，key 先收集起来，事务提交后一次性删除，回滚时不删除，避免提交前被并发读请求用旧数据回填
+ * 2.同一事务内的所有 key 合并为一次 pipeline（UNLINK + 版本号 + 广播）
+ * 3.延迟双删：第一次删除之后，在时间轮上延迟一段时间再删除一次，清除删除与提交之间被回填的旧数据
+ * @author Ace
+ */
+@Slf4j
+@Component
+public class CacheInvalidator {
+
+    private final CacheClient cacheClient;
+
+    private final CacheProperties.Invalidation config;
+
+    /**
+     * 延迟双删使用的时间轮，精度为一个 tick，适合大量短延迟任务
+     */
+    private final Timer timer;
+
+    public CacheInvalidator(CacheClient cacheClient, CacheProperties cacheProperties) {
+        this.cacheClient = cacheClient;
+        this.config = cacheProperties.getInvalidation();
+        this.timer = new HashedWheelTimer(
+                Thread.ofPlatform().name("cache-double-delete").daemon(true).factory(),
+                config.getTickDuration().toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 删除缓存，在事务中调用时等事务提交后再删除
+     * @param key 缓存 key
+     */
+    public void invalidate(String key) {
+        invalidate(List.of(key));
+    }
+
+    /**
+     * 批量删除缓存，在事务中调用时等事务提交后再删除，同一事务内多次调用合并为一次
+     * @param keys 缓存 key
+     */
+    public void invalidate(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            deleteNow(new LinkedHashSet<>(keys));
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        Set<String> pending = (Set<String>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            //当前事务第一次失效缓存，注册事务回调
+            Set<String> collected = new LinkedHashSet<>();
+            TransactionSynchronizationManager.bindResource(this, collected);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    deleteNow(collected);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(CacheInvalidator.this);
+                }
+            });
+            pending = collected;
+        }
+        pending.addAll(keys);
+    }
+
+    /**
+     * 立即删除，并安排延迟的第二次删除
+     */
+    private void deleteNow(Set<String> keys) {
+        try {
+            cacheClient.deleteAll(keys);
+        } catch (Exception e) {
+            //第一次删除失败时仍然安排第二次删除，缓存最多在延迟时间内不一致
+            log.error("删除缓存失败，keys: {}", keys, e);
+        }
+        long delay = config.getDoubleDeleteDelay().toMillis();
+        if (delay <= 0) {
+            return;
+        }
+        timer.newTimeout(timeout -> {
+            try {
+                cacheClient.deleteAll(keys);
+            } catch (Exception e) {
+                log.error("延迟删除缓存失败，keys: {}", keys, e);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        timer.stop();
+    }
+}
@@ -0,0 +1,269 @@
+package com.hmdp.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 缓存指标，所有指标都带有 prefix（缓存 key 前缀）标签
+ * cache.requests：查询次数，按 strategy（查询策略）和 result（命中结果）区分
+ * cache.redis：访问 Redis 的耗时，按 op 区分
+ * cache.load：回源数据库的耗时，按 strategy 区分
+ * cache.lock.wait：互斥锁策略下等待其他节点重建的耗时
+ * cache.rebuild：缓存重建耗时，按 outcome 区分成功和失败
+ * cache.compression.*：值压缩前后的字节数和压缩、解压耗时，不区分前缀
+ * Redis 熔断器的状态由 RedisCircuitBreaker 上报
+ * @author Ace
+ */
+@Component
+public class CacheMetrics {
+
+    public static final String PASS_THROUGH = "pass_through";
+    public static final String MUTEX = "mutex";
+    public static final String LOGICAL = "logical";
+    public static final String BATCH = "batch";
+    public static final String DIRECT = "direct";
+    /**
+     * Redis 熔断时直接查询数据库
+     */
+    public static final String DEGRADED = "degraded";
+
+    /**
+     * 命中本地一级缓存
+     */
+    public static final String LOCAL_HIT = "local_hit";
+    /**
+     * 命中 Redis
+     */
+    public static final String HIT = "hit";
+    /**
+     * 命中防穿透的空值
+     */
+    public static final String NULL_HIT = "null_hit";
+    /**
+     * 逻辑过期策略下命中已过期的数据
+     */
+    public static final String STALE_HIT = "stale_hit";
+    /**
+     * 被布隆过滤器拦截
+     */
+    public static final String BLOOM_REJECT = "bloom_reject";
+    /**
+     * 未命中，需要回源
+     */
+    public static final String MISS = "miss";
+    /**
+     * Redis 熔断时命中本地保存的旧数据
+     */
+    public static final String STALE_COPY = "stale_copy";
+
+    private final MeterRegistry meterRegistry;
+
+    public CacheMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 记录一次查询结果
+     */
+    public void request(String keyPrefix, String strategy, String result) {
+        request(keyPrefix, strategy, result, 1);
+    }
+
+    /**
+     * 记录多次查询结果，用于批量查询
+     */
+    public void request(String keyPrefix, String strategy, String result, int count) {
+        if (count <= 0) {
+            return;
+        }
+        Counter.builder("cache.requests")
+                .tag("prefix", keyPrefix)
+                .tag("strategy", strategy)
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment(count);
+    }
+
+    /**
+     * 记录一次 Redis 访问的耗时
+     */
+    public <T> T redis(String keyPrefix, String op, Supplier<T> call) {
+        return Timer.builder("cache.redis")
+                .tag("prefix", keyPrefix)
+                .tag("op", op)
+                .register(meterRegistry)
+                .record(call);
+    }
+
+    /**
+     * 记录一次异步 Redis 访问的耗时，从发起到完成
+     */
+    public <T> CompletableFuture<T> redisAsync(String keyPrefix, String op, Supplier<CompletableFuture<T>> call) {
+        Timer timer = Timer.builder("cache.redis")
+                .tag("prefix", keyPrefix)
+                .tag("op", op)
+                .register(meterRegistry);
+        long begin = System.nanoTime();
+        return call.get().whenComplete((r, e) -> timer.record(System.nanoTime() - begin, TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * 记录一次回源数据库的耗时
+     */
+    public <T> T load(String keyPrefix, String strategy, Supplier<T> call) {
+        return Timer.builder("cache.load")
+                .tag("prefix", keyPrefix)
+                .tag("strategy", strategy)
+                .register(meterRegistry)
+                .record(call);
+    }
+
+    /**
+     * 记录等待互斥锁的耗时
+     */
+    public void lockWait(String keyPrefix, long nanos) {
+        Timer.builder("cache.lock.wait")
+                .tag("prefix", keyPrefix)
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录一次缓存重建
+     */
+    public void rebuild(String keyPrefix, long nanos, boolean success) {
+        Timer.builder("cache.rebuild")
+                .tag("prefix", keyPrefix)
+                .tag("outcome", success ? "success" : "failure")
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录一次被放弃的缓存重建
+     */
+    public void rebuildRejected(String keyPrefix, String reason) {
+        Counter.builder("cache.rebuild.rejected")
+                .tag("prefix", keyPrefix)
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * 记录一次压缩
+     * @param before 压缩前字节数
+     * @param after 压缩后字节数，没有变小时等于 before
+     * @param nanos 压缩耗时
+     */
+    public void compressed(int before, int after, long nanos) {
+        Counter.builder("cache.compression.input.bytes").register(meterRegistry).increment(before);
+        Counter.builder("cache.compression.output.bytes").register(meterRegistry).increment(after);
+        Timer.builder("cache.compression").tag("op", "compress").register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录一次解压
+     */
+    public void decompressed(long nanos) {
+        Timer.builder("cache.compression").tag("op", "decompress").register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 按前缀汇总当前的指标，值压缩的统计放在 compression 下，用于调整过期时间等参数
+     * @return 前缀到统计数据的映射
+     */
+    public Map<String, Map<String, Object>> snapshot() {
+        Map<String, Map<String, Object>> stats = new TreeMap<>();
+        meterRegistry.find("cache.requests").counters().forEach(counter -> {
+            String prefix = counter.getId().getTag("prefix");
+            String strategy = counter.getId().getTag("strategy");
+            String result = counter.getId().getTag("result");
+            Map<String, Object> requests = child(child(stats.computeIfAbsent(prefix, k -> new TreeMap<>()), "requests"), strategy);
+            requests.put(result, (long) counter.count());
+        });
+        stats.values().forEach(prefixStats -> child(prefixStats, "requests").values().forEach(value -> {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> requests = (Map<String, Object>) value;
+            //命中率：不需要回源数据库的查询所占的比例
+            long total = requests.values().stream().mapToLong(v -> (Long) v).sum();
+            long hits = (Long) requests.getOrDefault(LOCAL_HIT, 0L) + (Long) requests.getOrDefault(HIT, 0L)
+                    + (Long) requests.getOrDefault(NULL_HIT, 0L) + (Long) requests.getOrDefault(STALE_HIT, 0L)
+                    + (Long) requests.getOrDefault(BLOOM_REJECT, 0L) + (Long) requests.getOrDefault(STALE_COPY, 0L);
+            requests.put("hitRatio", total == 0 ? 0 : (double) hits / total);
+        }));
+        timers(stats, "cache.redis", "redis", "op");
+        timers(stats, "cache.load", "load", "strategy");
+        timers(stats, "cache.lock.wait", "lockWait", null);
+        timers(stats, "cache.rebuild", "rebuild", "outcome");
+        meterRegistry.find("cache.rebuild.rejected").counters().forEach(counter -> {
+            String prefix = counter.getId().getTag("prefix");
+            child(stats.computeIfAbsent(prefix, k -> new TreeMap<>()), "rebuildRejected")
+                    .put(counter.getId().getTag("reason"), (long) counter.count());
+        });
+        Counter input = meterRegistry.find("cache.compression.input.bytes").counter();
+        Counter output = meterRegistry.find("cache.compression.output.bytes").counter();
+        if (input != null && output != null) {
+            Map<String, Object> compression = new TreeMap<>();
+            compression.put("inputBytes", (long) input.count());
+            compression.put("outputBytes", (long) output.count());
+            compression.put("ratio", input.count() == 0 ? 1 : output.count() / input.count());
+            meterRegistry.find("cache.compression").timers().forEach(timer -> {
+                Map<String, Object> summary = new TreeMap<>();
+                summary.put("count", timer.count());
+                summary.put("meanMs", timer.mean(TimeUnit.MILLISECONDS));
+                compression.put(timer.getId().getTag("op"), summary);
+            });
+            stats.put("compression", compression);
+        }
+        Gauge breakerState = meterRegistry.find("cache.redis.breaker.state").gauge();
+        Counter breakerRejected = meterRegistry.find("cache.redis.breaker.rejected").counter();
+        if (breakerState != null && breakerRejected != null) {
+            Map<String, Object> breaker = new TreeMap<>();
+            breaker.put("state", RedisCircuitBreaker.State.values()[(int) breakerState.value()]);
+            breaker.put("rejected", (long) breakerRejected.count());
+            stats.put("breaker", breaker);
+        }
+        return stats;
+    }
+
+    private void timers(Map<String, Map<String, Object>> stats, String name, String field, String groupTag) {
+        meterRegistry.find(name).timers().forEach(timer -> {
+            String prefix = timer.getId().getTag("prefix");
+            Map<String, Object> summary = new TreeMap<>();
+            summary.put("count", timer.count());
+            summary.put("meanMs", timer.mean(TimeUnit.MILLISECONDS));
+            summary.put("maxMs", timer.max(TimeUnit.MILLISECONDS));
+            Map<String, Object> prefixStats = stats.computeIfAbsent(prefix, k -> new TreeMap<>());
+            if (groupTag == null) {
+                prefixStats.put(field, summary);
+            } else {
+                child(prefixStats, field).put(timer.getId().getTag(groupTag), summary);
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> child(Map<String, Object> parent, String name) {
+        return (Map<String, Object>) parent.computeIfAbsent(name, k -> new TreeMap<>());
+    }
+
+    /**
+     * 从缓存 key 中截取前缀，取到最后一个冒号为止
+     */
+    public static String prefixOf(String key) {
+        int index = key.lastIndexOf(':');
+        return index < 0 ? key : key.substring(0, index + 1);
+    }
+}
@@ -0,0 +1,27 @@
+package com.hmdp.utils;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * 缓存指标端点：/actuator/cache，需要在 management.endpoints.web.exposure.include 中加入 cache
+ * @author Ace
+ */
+@Component
+@Endpoint(id = "cache")
+public class CacheMetricsEndpoint {
+
+    private final CacheMetrics cacheMetrics;
+
+    public CacheMetricsEndpoint(CacheMetrics cacheMetrics) {
+        this.cacheMetrics = cacheMetrics;
+    }
+
+    @ReadOperation
+    public Map<String, Map<String, Object>> stats() {
+        return cacheMetrics.snapshot();
+    }
+}
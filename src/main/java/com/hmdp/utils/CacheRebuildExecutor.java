@@ -0,0 +1,157 @@
+package com.hmdp.utils;
+
+import com.hmdp.config.CacheProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 缓存重建调度器
+ * 1.队列有界，队列满时直接放弃本次重建，调用方继续返回旧值
+ * 2.同一个 key 同时只有一个重建任务
+ * 3.某个前缀的重建失败或耗时超过阈值时，该前缀指数退避，退避期间放弃该前缀的重建，避免数据库变慢时继续堆积请求，
+ *   其他前缀（可能查询的是其他表或其他库）不受影响
+ * 4.上报队列长度、按前缀的重建耗时、失败和放弃次数
+ * @author Ace
+ */
+@Slf4j
+@Component
+public class CacheRebuildExecutor {
+
+    private final CacheProperties.Rebuild config;
+
+    private final CacheMetrics cacheMetrics;
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * 正在排队或执行的 key
+     */
+    private final Map<String, Boolean> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 各前缀的退避状态
+     */
+    private final Map<String, Backoff> backoffs = new ConcurrentHashMap<>();
+
+    public CacheRebuildExecutor(CacheProperties cacheProperties, CacheMetrics cacheMetrics, MeterRegistry meterRegistry) {
+        this.config = cacheProperties.getRebuild();
+        this.cacheMetrics = cacheMetrics;
+        ThreadFactory threadFactory = config.isVirtualThreads()
+                ? Thread.ofVirtual().name("cache-rebuild-", 0).factory()
+                : Thread.ofPlatform().name("cache-rebuild-", 0).daemon(true).factory();
+        this.executor = new ThreadPoolExecutor(
+                config.getConcurrency(), config.getConcurrency(),
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(config.getQueueCapacity()),
+                threadFactory,
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        Gauge.builder("cache.rebuild.queue", executor, e -> e.getQueue().size())
+                .description("等待执行的缓存重建任务数")
+                .register(meterRegistry);
+        Gauge.builder("cache.rebuild.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("正在执行的缓存重建任务数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 该 key 是否已经在排队或执行，用于在获取分布式锁之前快速去重
+     */
+    public boolean isPending(String key) {
+        return pending.containsKey(key);
+    }
+
+    /**
+     * 提交重建任务
+     * @param keyPrefix 缓存前缀，用于按前缀统计
+     * @param key 缓存 key，用于去重
+     * @param task 重建逻辑，抛出的异常会被记录并计入失败次数
+     * @return 是否被接受，返回 false 时任务不会执行，调用方需要自行释放已获取的资源
+     */
+    public boolean submit(String keyPrefix, String key, Runnable task) {
+        Backoff backoff = backoffs.get(keyPrefix);
+        if (backoff != null && System.currentTimeMillis() < backoff.until.get()) {
+            cacheMetrics.rebuildRejected(keyPrefix, "backoff");
+            return false;
+        }
+        if (pending.putIfAbsent(key, Boolean.TRUE) != null) {
+            cacheMetrics.rebuildRejected(keyPrefix, "duplicate");
+            return false;
+        }
+        try {
+            executor.execute(() -> run(keyPrefix, key, task));
+            return true;
+        } catch (RejectedExecutionException e) {
+            pending.remove(key);
+            cacheMetrics.rebuildRejected(keyPrefix, "queue_full");
+            return false;
+        }
+    }
+
+    private void run(String keyPrefix, String key, Runnable task) {
+        long begin = System.nanoTime();
+        boolean success = false;
+        try {
+            task.run();
+            success = true;
+        } catch (Exception e) {
+            log.error("缓存重建失败，key: {}", key, e);
+        } finally {
+            pending.remove(key);
+            long elapsed = System.nanoTime() - begin;
+            cacheMetrics.rebuild(keyPrefix, elapsed, success);
+            updateBackoff(keyPrefix, success && elapsed <= config.getSlowThreshold().toNanos());
+        }
+    }
+
+    /**
+     * 同一前缀连续第 n 次失败或慢重建时，该前缀退避 base * 2^(n-1)，不超过 max
+     */
+    private void updateBackoff(String keyPrefix, boolean healthy) {
+        if (healthy) {
+            Backoff backoff = backoffs.get(keyPrefix);
+            if (backoff != null) {
+                backoff.streak.set(0);
+            }
+            return;
+        }
+        Backoff backoff = backoffs.computeIfAbsent(keyPrefix, prefix -> new Backoff());
+        int streak = backoff.streak.incrementAndGet();
+        long base = config.getBackoffBase().toMillis();
+        long millis = Math.min(config.getBackoffMax().toMillis(), base << Math.min(streak - 1, 20));
+        backoff.until.accumulateAndGet(System.currentTimeMillis() + millis, Math::max);
+        log.warn("缓存重建连续 {} 次失败或超时，暂停重建 {} ms，keyPrefix: {}", streak, millis, keyPrefix);
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * 一个前缀的退避状态
+     */
+    private static class Backoff {
+        /**
+         * 连续失败或慢重建的次数，成功且不慢时清零
+         */
+        private final AtomicInteger streak = new AtomicInteger();
+        /**
+         * 退避截止时间戳（毫秒），在此之前放弃该前缀的重建
+         */
+        private final AtomicLong until = new AtomicLong();
+    }
+}
@@ -0,0 +1,20 @@
+package com.hmdp.utils;
+
+/**
+ * CacheClient 的查询策略
+ * @author Ace
+ */
+public enum CacheStrategy {
+    /**
+     * 缓存空值解决缓存穿透，对应 queryWithPassThrough
+     */
+    PASS_THROUGH,
+    /**
+     * 互斥锁解决缓存击穿，对应 queryWithMutex
+     */
+    MUTEX,
+    /**
+     * 逻辑过期解决缓存击穿，对应 queryWithLogicalExpire，需要预热
+     */
+    LOGICAL_EXPIRE
+}
@@ -0,0 +1,101 @@
+package com.hmdp.utils;
+
+import com.hmdp.config.CacheProperties;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.hmdp.utils.RedisConstants.CACHE_STRATEGY_CHANNEL;
+import static com.hmdp.utils.RedisConstants.CACHE_STRATEGY_KEY;
+
+/**
+ * 按缓存前缀决定 @HmdpCached 使用的查询策略，优先级从高到低：
+ * 1.运行时覆盖，保存在 Redis hash cache:strategy 中，修改后广播给所有节点，不需要重新部署
+ * 2.配置 hmdp.cache.strategy[前缀]
+ * 3.注解上声明的策略
+ * @author Ace
+ */
+@Slf4j
+@Component
+public class CacheStrategyRegistry {
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final RedisMessageListenerContainer listenerContainer;
+
+    private final CacheProperties cacheProperties;
+
+    /**
+     * 运行时覆盖的策略，每次变更整体替换
+     */
+    private volatile Map<String, CacheStrategy> overrides = Map.of();
+
+    public CacheStrategyRegistry(StringRedisTemplate stringRedisTemplate,
+                                 RedisMessageListenerContainer listenerContainer,
+                                 CacheProperties cacheProperties) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.cacheProperties = cacheProperties;
+    }
+
+    @PostConstruct
+    private void init() {
+        //其他节点修改策略后重新加载
+        listenerContainer.addMessageListener((message, pattern) -> reload(), new ChannelTopic(CACHE_STRATEGY_CHANNEL));
+        reload();
+    }
+
+    /**
+     * 获取某个前缀当前使用的策略
+     * @param keyPrefix 缓存前缀
+     * @param declared 注解上声明的策略
+     */
+    public CacheStrategy resolve(String keyPrefix, CacheStrategy declared) {
+        CacheStrategy strategy = overrides.get(keyPrefix);
+        if (strategy != null) {
+            return strategy;
+        }
+        return cacheProperties.getStrategy().getOrDefault(keyPrefix, declared);
+    }
+
+    /**
+     * 运行时修改某个前缀的策略，并通知所有节点
+     * @param keyPrefix 缓存前缀
+     * @param strategy 新的策略，为 null 时删除覆盖，恢复配置或注解上的策略
+     */
+    public void update(String keyPrefix, CacheStrategy strategy) {
+        if (strategy == null) {
+            stringRedisTemplate.opsForHash().delete(CACHE_STRATEGY_KEY, keyPrefix);
+        } else {
+            stringRedisTemplate.opsForHash().put(CACHE_STRATEGY_KEY, keyPrefix, strategy.name());
+        }
+        reload();
+        stringRedisTemplate.convertAndSend(CACHE_STRATEGY_CHANNEL, keyPrefix);
+    }
+
+    /**
+     * 当前的运行时覆盖
+     */
+    public Map<String, CacheStrategy> overrides() {
+        return overrides;
+    }
+
+    private void reload() {
+        Map<String, CacheStrategy> loaded = new HashMap<>();
+        stringRedisTemplate.opsForHash().entries(CACHE_STRATEGY_KEY).forEach((prefix, name) -> {
+            try {
+                loaded.put(prefix.toString(), CacheStrategy.valueOf(name.toString()));
+            } catch (IllegalArgumentException e) {
+                log.warn("未知的缓存策略：{}，前缀：{}", name, prefix);
+            }
+        });
+        overrides = loaded;
+        log.info("缓存策略覆盖：{}", loaded);
+    }
+}
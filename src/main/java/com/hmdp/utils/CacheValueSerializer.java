@@ -0,0 +1,254 @@
+package com.hmdp.utils;
+
+import com.hmdp.config.CacheProperties;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 缓存值的序列化格式：4 字节头 + 编码器输出
+ * 头部依次为：魔数 0xCA、格式版本、编码器编号、标志位
+ * 标志位 FLAG_EXPIRE 表示头部之后还有 12 字节：过期时间戳（毫秒）、回源耗时（毫秒），用于提前刷新
+ * 标志位 FLAG_COMPRESSED 表示编码器输出经过 deflate 压缩，压缩数据前有 4 字节的原始长度
+ * 标志位 FLAG_LOGICAL 表示值是逻辑过期策略写入的 RedisData，切换查询策略时据此识别旧策略写入的数据
+ * 只有头部、没有编码器输出的值表示数据库中不存在的数据（空值），用于哈希桶中需要记录过期时间的空值
+ * 读取时根据头部中的编码器编号选择编码器，切换编码器后旧数据仍然可读，不需要清空 Redis；
+ * 没有头部的值是旧版本直接存储的 JSON 字符串，按 JSON 解析
+ * @author Ace
+ */
+@Component
+public class CacheValueSerializer {
+
+    static final byte MAGIC = (byte) 0xCA;
+    static final byte FORMAT_VERSION = 1;
+    static final int HEADER_LENGTH = 4;
+
+    static final byte FLAG_EXPIRE = 0x01;
+    static final int EXPIRE_LENGTH = 12;
+
+    static final byte FLAG_COMPRESSED = 0x02;
+
+    static final byte FLAG_LOGICAL = 0x04;
+
+    private final Map<Byte, CacheCodec> codecs = new HashMap<>();
+
+    /**
+     * 写入时使用的编码器
+     */
+    private final CacheCodec writeCodec;
+
+    private final CacheProperties.Compression compression;
+
+    private final CacheMetrics cacheMetrics;
+
+    public CacheValueSerializer(List<CacheCodec> codecList, CacheProperties cacheProperties, CacheMetrics cacheMetrics) {
+        this.compression = cacheProperties.getCompression();
+        this.cacheMetrics = cacheMetrics;
+        for (CacheCodec codec : codecList) {
+            CacheCodec old = codecs.put(codec.id(), codec);
+            if (old != null) {
+                throw new IllegalStateException("缓存编码器编号重复：" + codec.id());
+            }
+        }
+        this.writeCodec = codecList.stream()
+                .filter(codec -> codec.name().equals(cacheProperties.getCodec()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("未知的缓存编码器：" + cacheProperties.getCodec()));
+    }
+
+    /**
+     * 序列化
+     * @param value 任意对象
+     * @return 带头部的字节数组
+     */
+    public byte[] serialize(Object value) {
+        return serialize(value, 0, 0);
+    }
+
+    /**
+     * 序列化，并在头部记录过期时间和回源耗时
+     * @param value 任意对象
+     * @param expireAt 过期时间戳（毫秒），为 0 时不记录
+     * @param deltaMillis 回源耗时（毫秒）
+     * @return 带头部的字节数组
+     */
+    public byte[] serialize(Object value, long expireAt, int deltaMillis) {
+        return serialize(value, expireAt, deltaMillis, (byte) 0);
+    }
+
+    /**
+     * 序列化逻辑过期策略的 RedisData，并在头部标记
+     * @param redisData 带逻辑过期时间的数据
+     * @return 带头部的字节数组
+     */
+    public byte[] serializeLogical(RedisData<?> redisData) {
+        return serialize(redisData, 0, 0, FLAG_LOGICAL);
+    }
+
+    /**
+     * 是否是逻辑过期策略写入的值
+     * @param raw Redis 中存储的字节数组
+     */
+    public boolean isLogical(byte[] raw) {
+        return raw.length >= HEADER_LENGTH && raw[0] == MAGIC && (raw[3] & FLAG_LOGICAL) != 0;
+    }
+
+    /**
+     * 序列化空值，只有头部和过期时间
+     * @param expireAt 过期时间戳（毫秒）
+     * @return 带头部的字节数组
+     */
+    public byte[] serializeEmpty(long expireAt) {
+        byte[] raw = new byte[HEADER_LENGTH + EXPIRE_LENGTH];
+        ByteBuffer.wrap(raw).put(MAGIC).put(FORMAT_VERSION).put(writeCodec.id()).put(FLAG_EXPIRE)
+                .putLong(expireAt).putInt(0);
+        return raw;
+    }
+
+    /**
+     * 是否是 serializeEmpty 写入的空值
+     * @param raw Redis 中存储的字节数组
+     */
+    public boolean isEmpty(byte[] raw) {
+        if (raw.length < HEADER_LENGTH || raw[0] != MAGIC) {
+            return raw.length == 0;
+        }
+        return raw.length == HEADER_LENGTH + ((raw[3] & FLAG_EXPIRE) != 0 ? EXPIRE_LENGTH : 0);
+    }
+
+    private byte[] serialize(Object value, long expireAt, int deltaMillis, byte extraFlags) {
+        byte[] body = writeCodec.encode(value);
+        byte flags = extraFlags;
+        //超过阈值时压缩，压缩后没有变小则保存原文
+        if (compression.getThreshold() > 0 && body.length >= compression.getThreshold()) {
+            byte[] compressed = compress(body);
+            if (compressed != null) {
+                body = compressed;
+                flags |= FLAG_COMPRESSED;
+            }
+        }
+        boolean withExpire = expireAt > 0;
+        if (withExpire) {
+            flags |= FLAG_EXPIRE;
+        }
+        int offset = HEADER_LENGTH + (withExpire ? EXPIRE_LENGTH : 0);
+        byte[] raw = new byte[offset + body.length];
+        ByteBuffer buffer = ByteBuffer.wrap(raw);
+        buffer.put(MAGIC).put(FORMAT_VERSION).put(writeCodec.id()).put(flags);
+        if (withExpire) {
+            buffer.putLong(expireAt).putInt(deltaMillis);
+        }
+        buffer.put(body);
+        return raw;
+    }
+
+    /**
+     * 读取头部记录的过期时间和回源耗时
+     * @param raw Redis 中存储的字节数组
+     * @return [过期时间戳, 回源耗时]，没有记录时返回 null
+     */
+    public long[] readExpire(byte[] raw) {
+        if (raw.length < HEADER_LENGTH + EXPIRE_LENGTH || raw[0] != MAGIC || (raw[3] & FLAG_EXPIRE) == 0) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(raw, HEADER_LENGTH, EXPIRE_LENGTH);
+        return new long[]{buffer.getLong(), buffer.getInt()};
+    }
+
+    /**
+     * 反序列化
+     * @param raw Redis 中存储的字节数组
+     * @param type 目标类型
+     * @return 对象
+     * @param <T> 目标类型
+     */
+    public <T> T deserialize(byte[] raw, Type type) {
+        if (raw.length < HEADER_LENGTH || raw[0] != MAGIC) {
+            //旧版本直接存储的 JSON 字符串
+            return codecs.get(JsonCacheCodec.ID).decode(raw, type);
+        }
+        CacheCodec codec = codecs.get(raw[2]);
+        if (codec == null) {
+            throw new IllegalStateException("未知的缓存编码器编号：" + raw[2]);
+        }
+        int offset = HEADER_LENGTH + ((raw[3] & FLAG_EXPIRE) != 0 ? EXPIRE_LENGTH : 0);
+        byte[] body;
+        if ((raw[3] & FLAG_COMPRESSED) != 0) {
+            body = decompress(raw, offset);
+        } else {
+            body = new byte[raw.length - offset];
+            System.arraycopy(raw, offset, body, 0, body.length);
+        }
+        return codec.decode(body, type);
+    }
+
+    /**
+     * 压缩编码器输出
+     * @param body 编码器输出
+     * @return 原始长度（4 字节）+ deflate 数据，压缩后没有变小时返回 null
+     */
+    private byte[] compress(byte[] body) {
+        if (body.length <= 4) {
+            return null;
+        }
+        long begin = System.nanoTime();
+        Deflater deflater = new Deflater(compression.getLevel());
+        try {
+            deflater.setInput(body);
+            deflater.finish();
+            //输出缓冲区与原文等长，写满仍未压缩完说明压缩后不会更小
+            byte[] out = new byte[body.length];
+            ByteBuffer.wrap(out).putInt(body.length);
+            int length = 4;
+            while (!deflater.finished() && length < out.length) {
+                length += deflater.deflate(out, length, out.length - length);
+            }
+            boolean smaller = deflater.finished() && length < body.length;
+            cacheMetrics.compressed(body.length, smaller ? length : body.length, System.nanoTime() - begin);
+            return smaller ? Arrays.copyOf(out, length) : null;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * 解压 compress 的输出
+     * @param raw Redis 中存储的字节数组
+     * @param offset 压缩数据在 raw 中的起始位置
+     * @return 编码器输出
+     */
+    private byte[] decompress(byte[] raw, int offset) {
+        long begin = System.nanoTime();
+        int length = ByteBuffer.wrap(raw, offset, 4).getInt();
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(raw, offset + 4, raw.length - offset - 4);
+            byte[] body = new byte[length];
+            int n = 0;
+            while (n < length && !inflater.finished()) {
+                int read = inflater.inflate(body, n, length - n);
+                if (read == 0 && inflater.needsInput()) {
+                    break;
+                }
+                n += read;
+            }
+            if (n != length) {
+                throw new IllegalStateException("缓存值解压失败：数据不完整");
+            }
+            cacheMetrics.decompressed(System.nanoTime() - begin);
+            return body;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("缓存值解压失败", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.hmdp.utils;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 方法正常返回后通过 CacheInvalidator 删除缓存，并通知各节点清除本地缓存
+ * 处于事务中时在事务提交之后删除，并在一段时间后再删除一次
+ * @author Ace
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface HmdpCacheEvict {
+
+    /**
+     * 缓存 key 前缀
+     */
+    String prefix();
+
+    /**
+     * 缓存 key 中前缀之后的部分，SpEL 表达式，例如 #shop.id；为空时取第一个参数
+     */
+    String key() default "";
+}
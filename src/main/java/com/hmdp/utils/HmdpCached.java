@@ -0,0 +1,57 @@
+package com.hmdp.utils;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 查询方法的结果通过 CacheClient 缓存，缓存 key 为 prefix + key 表达式的值
+ * 方法返回 Result 时缓存的是 Result.data，失败的 Result 视为数据不存在
+ * 例如：@HmdpCached(prefix = CACHE_SHOP_KEY, type = Shop.class, nullMessage = "商铺不存在")
+ * @author Ace
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface HmdpCached {
+
+    /**
+     * 缓存 key 前缀
+     */
+    String prefix();
+
+    /**
+     * 缓存 key 中前缀之后的部分，SpEL 表达式，例如 #shop.id；为空时取第一个参数
+     */
+    String key() default "";
+
+    /**
+     * 默认的查询策略，可以按前缀在运行时覆盖，见 CacheStrategyRegistry
+     */
+    CacheStrategy strategy() default CacheStrategy.PASS_THROUGH;
+
+    /**
+     * 缓存时间
+     */
+    long ttl() default 30;
+
+    TimeUnit unit() default TimeUnit.MINUTES;
+
+    /**
+     * 缓存值的类型，方法返回 Result 时必须指定；为 Void 时使用方法的返回类型
+     */
+    Class<?> type() default Void.class;
+
+    /**
+     * 缓存值类型的泛型参数，例如 type = List.class, typeArguments = Voucher.class
+     */
+    Class<?>[] typeArguments() default {};
+
+    /**
+     * 方法返回 Result 且数据不存在时的错误信息，为空时返回 Result.ok()
+     */
+    String nullMessage() default "";
+}
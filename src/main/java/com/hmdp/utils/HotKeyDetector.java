@@ -0,0 +1,192 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.lang.hash.MurmurHash;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hmdp.config.CacheProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 热点 key 探测：用 count-min sketch 统计每个 key 的读取次数，定期将所有计数减半实现衰减
+ * 计数超过阈值的 key 晋升为热点，在本地保存一份短时间的副本，读取时不再访问 Redis；
+ * 衰减后计数低于阈值一半的热点 key 降级，并删除本地副本
+ * @author Ace
+ */
+@Slf4j
+@Component
+public class HotKeyDetector {
+
+    private final CacheProperties.HotKey config;
+
+    /**
+     * count-min sketch 的计数器，depth 行，每行 width 个
+     */
+    private final AtomicLongArray counters;
+
+    private final int width;
+
+    private final int depth;
+
+    /**
+     * 当前的热点 key
+     */
+    private final Map<String, HotKey> hotKeys = new ConcurrentHashMap<>();
+
+    /**
+     * 热点 key 的本地副本
+     */
+    private final Cache<String, Object> replicas;
+
+    private final ScheduledExecutorService decayExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    public HotKeyDetector(CacheProperties cacheProperties) {
+        this.config = cacheProperties.getHotKey();
+        //宽度向上取整为 2 的幂，下标用位运算计算
+        this.width = Integer.highestOneBit(Math.max(16, config.getWidth() - 1)) << 1;
+        this.depth = config.getDepth();
+        this.counters = new AtomicLongArray(config.isEnabled() ? width * depth : 0);
+        this.replicas = Caffeine.newBuilder()
+                .maximumSize(config.getMaximumSize())
+                .expireAfterWrite(config.getTtl())
+                .build();
+        if (config.isEnabled()) {
+            long interval = config.getDecayInterval().toMillis();
+            decayExecutor.scheduleWithFixedDelay(this::decay, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    /**
+     * 记录一次读取，计数达到阈值时晋升为热点
+     * @param key 缓存 key
+     */
+    public void record(String key) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        long[] hash = hash(key);
+        long estimate = Long.MAX_VALUE;
+        for (int i = 0; i < depth; i++) {
+            estimate = Math.min(estimate, counters.incrementAndGet(index(hash, i)));
+        }
+        if (estimate >= config.getThreshold() && !hotKeys.containsKey(key)) {
+            HotKey hotKey = new HotKey();
+            hotKey.setKey(key);
+            hotKey.setPromoteTime(LocalDateTime.now());
+            if (hotKeys.putIfAbsent(key, hotKey) == null) {
+                log.info("发现热点 key: {}，启用本地副本", key);
+            }
+        }
+    }
+
+    /**
+     * 读取热点 key 的本地副本
+     * @return 不是热点或副本已过期时返回 null
+     */
+    @SuppressWarnings("unchecked")
+    public <R> R getReplica(String key) {
+        if (!config.isEnabled()) {
+            return null;
+        }
+        return (R) replicas.getIfPresent(key);
+    }
+
+    /**
+     * 如果 key 是热点，保存一份本地副本
+     */
+    public void putReplica(String key, Object value) {
+        if (value != null && hotKeys.containsKey(key)) {
+            replicas.put(key, value);
+        }
+    }
+
+    /**
+     * 删除本地副本，在缓存被删除时调用
+     */
+    public void evictReplica(String key) {
+        replicas.invalidate(key);
+    }
+
+    /**
+     * 当前的热点 key，按估计的读取次数从高到低排列
+     */
+    public List<HotKey> hotKeys() {
+        hotKeys.values().forEach(hotKey -> hotKey.setEstimate(estimate(hotKey.getKey())));
+        return hotKeys.values().stream()
+                .sorted(Comparator.comparingLong(HotKey::getEstimate).reversed())
+                .toList();
+    }
+
+    /**
+     * 所有计数减半，并将降温的热点 key 降级
+     */
+    private void decay() {
+        try {
+            for (int i = 0; i < counters.length(); i++) {
+                counters.getAndUpdate(i, v -> v >>> 1);
+            }
+            hotKeys.keySet().removeIf(key -> {
+                if (estimate(key) * 2 >= config.getThreshold()) {
+                    return false;
+                }
+                replicas.invalidate(key);
+                log.info("热点 key: {} 已降温，删除本地副本", key);
+                return true;
+            });
+        } catch (Exception e) {
+            log.error("热点 key 计数衰减失败", e);
+        }
+    }
+
+    private long estimate(String key) {
+        long[] hash = hash(key);
+        long estimate = Long.MAX_VALUE;
+        for (int i = 0; i < depth; i++) {
+            estimate = Math.min(estimate, counters.get(index(hash, i)));
+        }
+        return estimate;
+    }
+
+    private static long[] hash(String key) {
+        return MurmurHash.hash128(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 双重哈希计算第 row 行的计数器下标
+     */
+    private int index(long[] hash, int row) {
+        return row * width + (int) ((hash[0] + row * hash[1]) & (width - 1));
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        decayExecutor.shutdown();
+    }
+
+    @Data
+    public static class HotKey {
+        private String key;
+        /**
+         * 估计的读取次数（已衰减）
+         */
+        private long estimate;
+        private LocalDateTime promoteTime;
+    }
+}
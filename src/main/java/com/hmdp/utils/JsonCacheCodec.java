@@ -0,0 +1,36 @@
+package com.hmdp.utils;
+
+import com.alibaba.fastjson2.JSON;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Type;
+
+/**
+ * JSON 文本编码，兼容旧版本直接存储的 JSON 字符串
+ * @author Ace
+ */
+@Component
+public class JsonCacheCodec implements CacheCodec {
+
+    public static final byte ID = 1;
+
+    @Override
+    public byte id() {
+        return ID;
+    }
+
+    @Override
+    public String name() {
+        return "json";
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        return JSON.toJSONBytes(value);
+    }
+
+    @Override
+    public <T> T decode(byte[] bytes, Type type) {
+        return JSON.parseObject(bytes, type);
+    }
+}
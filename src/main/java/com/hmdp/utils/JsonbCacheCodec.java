@@ -0,0 +1,36 @@
+package com.hmdp.utils;
+
+import com.alibaba.fastjson2.JSONB;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Type;
+
+/**
+ * fastjson2 JSONB 二进制编码，数字和时间按二进制存储，字段名使用短编码，体积和编解码耗时都小于 JSON 文本
+ * @author Ace
+ */
+@Component
+public class JsonbCacheCodec implements CacheCodec {
+
+    public static final byte ID = 2;
+
+    @Override
+    public byte id() {
+        return ID;
+    }
+
+    @Override
+    public String name() {
+        return "jsonb";
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        return JSONB.toBytes(value);
+    }
+
+    @Override
+    public <T> T decode(byte[] bytes, Type type) {
+        return JSONB.parseObject(bytes, type);
+    }
+}
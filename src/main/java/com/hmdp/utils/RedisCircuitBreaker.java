@@ -0,0 +1,231 @@
+package com.hmdp.utils;
+
+import com.hmdp.config.CacheProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Redis 熔断器
+ * 1.关闭状态：记录最近 windowSize 次调用，失败或耗时超过 slowCallThreshold 的比例达到阈值时打开
+ * 2.打开状态：所有调用直接抛出 OpenException，调用方走降级逻辑，经过 openDuration 后进入半开状态
+ * 3.半开状态：放行 halfOpenCalls 次试探调用，全部成功后关闭，任意一次失败重新打开
+ * 熔断器只能让后续请求不再等待，已经发出的调用仍受 Redis 客户端超时（spring.data.redis.timeout）约束
+ * 指标：cache.redis.breaker.state（0 关闭、1 打开、2 半开）、cache.redis.breaker.rejected（被拒绝的调用次数）
+ * @author Ace
+ */
+@Slf4j
+@Component
+public class RedisCircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final CacheProperties.Breaker config;
+
+    private final long slowNanos;
+
+    /**
+     * 最近的调用结果，true 表示失败或慢调用
+     */
+    private final boolean[] window;
+
+    private int index;
+
+    private int count;
+
+    private int failures;
+
+    private volatile State state = State.CLOSED;
+
+    /**
+     * 打开时间戳（毫秒）
+     */
+    private long openedAt;
+
+    /**
+     * 半开状态下剩余的试探次数
+     */
+    private int halfOpenPermits;
+
+    /**
+     * 半开状态下成功的试探次数
+     */
+    private int halfOpenSuccesses;
+
+    private final Counter rejected;
+
+    public RedisCircuitBreaker(CacheProperties cacheProperties, MeterRegistry meterRegistry) {
+        this.config = cacheProperties.getBreaker();
+        this.slowNanos = config.getSlowCallThreshold().toNanos();
+        this.window = new boolean[config.getWindowSize()];
+        Gauge.builder("cache.redis.breaker.state", this, breaker -> breaker.getState().ordinal())
+                .description("Redis 熔断器状态：0 关闭、1 打开、2 半开")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("cache.redis.breaker.rejected")
+                .description("熔断器打开时被拒绝的 Redis 调用次数")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * 通过熔断器执行一次 Redis 调用
+     * @param call Redis 调用
+     * @return 调用结果
+     * @throws OpenException 熔断器打开时
+     */
+    public <T> T execute(Supplier<T> call) {
+        //未启用时不统计，调用不需要竞争熔断器的锁
+        if (!config.isEnabled()) {
+            return call.get();
+        }
+        if (!tryAcquire()) {
+            rejected.increment();
+            throw new OpenException();
+        }
+        long begin = System.nanoTime();
+        try {
+            T result = call.get();
+            onComplete(System.nanoTime() - begin, false);
+            return result;
+        } catch (RuntimeException e) {
+            onComplete(System.nanoTime() - begin, true);
+            throw e;
+        }
+    }
+
+    /**
+     * 通过熔断器执行一次异步 Redis 调用，耗时从发起到完成
+     * @param call 异步 Redis 调用
+     * @return 熔断器打开时以 OpenException 异常完成
+     */
+    public <T> CompletableFuture<T> executeAsync(Supplier<CompletableFuture<T>> call) {
+        if (!config.isEnabled()) {
+            try {
+                return call.get();
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        if (!tryAcquire()) {
+            rejected.increment();
+            return CompletableFuture.failedFuture(new OpenException());
+        }
+        long begin = System.nanoTime();
+        try {
+            return call.get().whenComplete((r, e) -> onComplete(System.nanoTime() - begin, e != null));
+        } catch (RuntimeException e) {
+            onComplete(System.nanoTime() - begin, true);
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * 是否是 Redis 不可用导致的异常（熔断器打开或 Redis 访问失败），调用方据此决定降级还是继续抛出
+     */
+    public static boolean isRedisFailure(Throwable e) {
+        while ((e instanceof CompletionException || e instanceof ExecutionException) && e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e instanceof OpenException || e instanceof DataAccessException;
+    }
+
+    private synchronized boolean tryAcquire() {
+        if (!config.isEnabled() || state == State.CLOSED) {
+            return true;
+        }
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < config.getOpenDuration().toMillis()) {
+                return false;
+            }
+            transitionTo(State.HALF_OPEN);
+            halfOpenPermits = config.getHalfOpenCalls();
+            halfOpenSuccesses = 0;
+        }
+        if (halfOpenPermits <= 0) {
+            return false;
+        }
+        halfOpenPermits--;
+        return true;
+    }
+
+    private synchronized void onComplete(long nanos, boolean error) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        boolean failed = error || nanos > slowNanos;
+        if (state == State.HALF_OPEN) {
+            if (failed) {
+                open();
+            } else if (++halfOpenSuccesses >= config.getHalfOpenCalls()) {
+                close();
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            //打开之前发出的调用，结果不再计入
+            return;
+        }
+        //1.写入环形窗口，覆盖最早的一次结果
+        if (count == window.length) {
+            if (window[index]) {
+                failures--;
+            }
+        } else {
+            count++;
+        }
+        window[index] = failed;
+        if (failed) {
+            failures++;
+        }
+        index = (index + 1) % window.length;
+        //2.调用次数足够且失败比例达到阈值时打开
+        if (count >= config.getMinimumCalls() && failures * 100 >= config.getFailureRateThreshold() * count) {
+            open();
+        }
+    }
+
+    private void open() {
+        openedAt = System.currentTimeMillis();
+        transitionTo(State.OPEN);
+    }
+
+    private void close() {
+        index = 0;
+        count = 0;
+        failures = 0;
+        transitionTo(State.CLOSED);
+    }
+
+    private void transitionTo(State next) {
+        if (state != next) {
+            log.warn("Redis 熔断器状态变化：{} -> {}", state, next);
+            state = next;
+        }
+    }
+
+    /**
+     * 熔断器打开时拒绝调用
+     */
+    public static class OpenException extends RuntimeException {
+        public OpenException() {
+            super("Redis 熔断器已打开", null, false, false);
+        }
+    }
+}
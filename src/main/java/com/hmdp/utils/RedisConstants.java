@@ -14,11 +14,38 @@ public class RedisConstants {
     public static final Long CACHE_SHOP_TTL = 30L;
     public static final String CACHE_SHOP_KEY = "cache:shop:";
     public static final String CACHE_SHOP_TYPE_KEY = "cache:shop-type:";
+    public static final Long CACHE_BLOG_TTL = 30L;
+    public static final String CACHE_BLOG_KEY = "cache:blog:";
+    public static final Long CACHE_USER_TTL = 30L;
+    public static final String CACHE_USER_KEY = "cache:user:";
+    public static final String CACHE_INVALIDATE_CHANNEL = "cache:invalidate";
+    public static final String CACHE_REBUILT_CHANNEL = "cache:rebuilt";
+    public static final Long CACHE_VOUCHER_TTL = 2L;
+    public static final String CACHE_VOUCHER_KEY = "cache:voucher:shop:";
+    public static final String CACHE_STRATEGY_KEY = "cache:strategy";
+    public static final String CACHE_STRATEGY_CHANNEL = "cache:strategy";
+    public static final String CACHE_VERSION_KEY = "cache:version:";
+    public static final Long CACHE_VERSION_TTL = 1L;
+
+    public static final String BLOOM_FILTER_KEY = "bloom:";
+    public static final String BLOOM_FILTER_CHANNEL = "bloom:add";
 
     public static final String LOCK_SHOP_KEY = "lock:shop:";
     public static final Long LOCK_SHOP_TTL = 10L;
+    public static final String LOCK_CACHE_KEY = "lock:";
+    public static final Long LOCK_CACHE_TTL = 10L;
+    public static final String LOCK_SECKILL_REBALANCE_KEY = "lock:seckill:rebalance:";
 
     public static final String SECKILL_STOCK_KEY = "seckill:stock:";
+    public static final String SECKILL_ORDER_KEY = "seckill:order:";
+    public static final String SECKILL_SHARDS_KEY = "seckill:shards:";
+    public static final String SECKILL_SOLD_OUT_CHANNEL = "seckill:sold-out";
+    public static final String SECKILL_BUCKET_KEY = "seckill:bucket:";
+    public static final String SECKILL_QUEUE_KEY = "seckill:queue:";
+    public static final Long SECKILL_QUEUE_TTL = 1L;
+    public static final String SECKILL_RESTOCK_CHANNEL = "seckill:restock";
+    public static final String SECKILL_ORDER_STATUS_KEY = "seckill:order-status:";
+    public static final String SECKILL_ORDER_STATUS_CHANNEL = "seckill:order-status";
     public static final String BLOG_LIKED_KEY = "blog:liked:";
     public static final String FEED_KEY = "feed:";
     public static final String SHOP_GEO_KEY = "shop:geo:";
@@ -12,4 +12,6 @@ public class RedisData<T> {
     private LocalDateTime expireTime;
     // 缓存数据
     private T data;
+    // 回源前读取到的版本号，每次删除缓存时版本号加一，用于丢弃回源期间数据已被更新的重建结果
+    private Long version;
 }
@@ -2,11 +2,13 @@ package com.hmdp.utils;
 
 import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.util.StrUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.hmdp.dto.UserDTO;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
 
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
@@ -17,13 +19,24 @@ import java.util.concurrent.TimeUnit;
  * @date 2025/5/26 12:50
  * 登录拦截器
  */
-public class RefreshTokenInterceptor implements HandlerInterceptor {
+public class RefreshTokenInterceptor implements AsyncHandlerInterceptor {
 
 
     private StringRedisTemplate stringRedisTemplate;
 
-    public RefreshTokenInterceptor(StringRedisTemplate stringRedisTemplate) {
+    private RedisCircuitBreaker circuitBreaker;
+
+    /**
+     * 最近加载过的登录用户，只在 Redis 熔断时使用
+     */
+    private final Cache<String, UserDTO> staleUsers = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterWrite(RedisConstants.LOGIN_USER_TTL, TimeUnit.MINUTES)
+            .build();
+
+    public RefreshTokenInterceptor(StringRedisTemplate stringRedisTemplate, RedisCircuitBreaker circuitBreaker) {
         this.stringRedisTemplate = stringRedisTemplate;
+        this.circuitBreaker = circuitBreaker;
     }
 
     /**
@@ -44,18 +57,39 @@ public class RefreshTokenInterceptor implements HandlerInterceptor {
         }
         //2. 基于token获取redis中的用户信息
         String key = RedisConstants.LOGIN_USER_KEY + token;
-        Map<Object, Object> userMap = stringRedisTemplate.opsForHash().entries(key);
+        Map<Object, Object> userMap;
+        try {
+            userMap = circuitBreaker.execute(() -> stringRedisTemplate.opsForHash().entries(key));
+        } catch (RuntimeException e) {
+            if (!RedisCircuitBreaker.isRedisFailure(e)) {
+                throw e;
+            }
+            //2.1 Redis 不可用时使用本节点最近加载过的用户信息，没有时按未登录放行
+            UserDTO stale = staleUsers.getIfPresent(token);
+            if (stale != null) {
+                UserHolder.saveUser(stale);
+            }
+            return true;
+        }
         //3.判断用户是否存在
         if (userMap.isEmpty()) {
             //4.用户不存在，直接放行
+            staleUsers.invalidate(token);
             return true;
         }
         //5. 将查询到的HashMap类型的用户信息转换为UserDTO对象
         UserDTO userDTO = BeanUtil.fillBeanWithMap(userMap,new UserDTO(), false);
         //6.存在，把用户信息存入ThreadLocal
         UserHolder.saveUser(userDTO);
-        //7.刷新token有效期
-        stringRedisTemplate.expire(key, RedisConstants.LOGIN_USER_TTL, TimeUnit.MINUTES);
+        staleUsers.put(token, userDTO);
+        //7.刷新token有效期，Redis 不可用时跳过
+        try {
+            circuitBreaker.execute(() -> stringRedisTemplate.expire(key, RedisConstants.LOGIN_USER_TTL, TimeUnit.MINUTES));
+        } catch (RuntimeException e) {
+            if (!RedisCircuitBreaker.isRedisFailure(e)) {
+                throw e;
+            }
+        }
         //8.放行请求
         return true;
     }
@@ -65,4 +99,12 @@ public class RefreshTokenInterceptor implements HandlerInterceptor {
         //移除用户信息
         UserHolder.removeUser();
     }
+
+    /**
+     * 长轮询、SSE 等异步请求在请求线程返回时不会调用 afterCompletion，在这里移除用户信息；异步结果分派时会重新执行 preHandle
+     */
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        UserHolder.removeUser();
+    }
 }
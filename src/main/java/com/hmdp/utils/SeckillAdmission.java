@@ -0,0 +1,209 @@
+package com.hmdp.utils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hmdp.config.SeckillProperties;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_BUCKET_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_QUEUE_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_QUEUE_TTL;
+
+/**
+ * 秒杀请求的准入控制，在请求进入 VoucherOrderServiceImpl 之前拒绝超出处理能力的流量
+ * 1.本地令牌桶：每个节点每张秒杀券一个，不访问 Redis，先挡掉单个节点上的突发流量
+ * 2.全局令牌桶：每张秒杀券一个，存放在 Redis 中由所有节点共享，限制集群总的放行速率；Redis 不可用时不限制，由秒杀本身的熔断处理
+ * 3.等候室（可选）：用户先领取排队号，按放行速率轮到后才能秒杀，没轮到的请求不进入秒杀流程
+ * @author Ace
+ */
+@Slf4j
+@Component
+public class SeckillAdmission {
+
+    private static final DefaultRedisScript<Long> TOKEN_BUCKET_SCRIPT;
+
+    private static final DefaultRedisScript<Long> QUEUE_JOIN_SCRIPT;
+
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> QUEUE_STATUS_SCRIPT;
+
+    static {
+        TOKEN_BUCKET_SCRIPT = new DefaultRedisScript<>();
+        TOKEN_BUCKET_SCRIPT.setLocation(new ClassPathResource("seckill_token_bucket.lua"));
+        TOKEN_BUCKET_SCRIPT.setResultType(Long.class);
+        QUEUE_JOIN_SCRIPT = new DefaultRedisScript<>();
+        QUEUE_JOIN_SCRIPT.setLocation(new ClassPathResource("seckill_queue_join.lua"));
+        QUEUE_JOIN_SCRIPT.setResultType(Long.class);
+        QUEUE_STATUS_SCRIPT = new DefaultRedisScript<>();
+        QUEUE_STATUS_SCRIPT.setLocation(new ClassPathResource("seckill_queue_status.lua"));
+        QUEUE_STATUS_SCRIPT.setResultType(List.class);
+    }
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisCircuitBreaker redisCircuitBreaker;
+
+    @Resource
+    private SeckillProperties seckillProperties;
+
+    /**
+     * 每张秒杀券的本地令牌桶，秒杀结束后不再访问的桶自动清除
+     */
+    private final Cache<Long, TokenBucket> localBuckets = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterAccess(Duration.ofMinutes(10))
+            .build();
+
+    /**
+     * 已经轮到的 voucherId:userId，轮到之后不会失效，之后的秒杀请求不再访问 Redis 判断
+     */
+    private final Cache<String, Boolean> admittedUsers = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterWrite(Duration.ofMinutes(30))
+            .build();
+
+    public boolean isEnabled() {
+        return seckillProperties.getAdmission().isEnabled();
+    }
+
+    public boolean isWaitingRoom() {
+        SeckillProperties.Admission admission = seckillProperties.getAdmission();
+        return admission.isEnabled() && admission.isWaitingRoom();
+    }
+
+    /**
+     * 从本地令牌桶和全局令牌桶各取一个令牌
+     * @return 是否放行
+     */
+    public boolean tryAcquire(Long voucherId) {
+        SeckillProperties.Admission admission = seckillProperties.getAdmission();
+        //1.本地令牌桶
+        TokenBucket local = localBuckets.get(voucherId,
+                id -> new TokenBucket(admission.getLocalRate(), admission.getLocalBurst()));
+        if (!local.tryAcquire()) {
+            return false;
+        }
+        //2.全局令牌桶
+        if (admission.getGlobalRate() <= 0) {
+            return true;
+        }
+        try {
+            Long allowed = redisCircuitBreaker.execute(() -> stringRedisTemplate.execute(
+                    TOKEN_BUCKET_SCRIPT,
+                    Collections.singletonList(bucketKey(voucherId)),
+                    String.valueOf(admission.getGlobalRate()), String.valueOf(admission.getGlobalBurst())));
+            return allowed == null || allowed == 1;
+        } catch (RuntimeException e) {
+            if (!RedisCircuitBreaker.isRedisFailure(e)) {
+                throw e;
+            }
+            //Redis 不可用，只按本地令牌桶限流
+            return true;
+        }
+    }
+
+    /**
+     * 领取排队号，重复领取返回原来的排队号
+     * @return 排队号；排队人数已满时返回 -1
+     */
+    public long join(Long voucherId, Long userId) {
+        SeckillProperties.Admission admission = seckillProperties.getAdmission();
+        Long ticket = redisCircuitBreaker.execute(() -> stringRedisTemplate.execute(
+                QUEUE_JOIN_SCRIPT,
+                Collections.singletonList(queueKey(voucherId)),
+                userId.toString(), String.valueOf(admission.getMaxQueue()),
+                String.valueOf(TimeUnit.DAYS.toSeconds(SECKILL_QUEUE_TTL))));
+        return ticket == null ? -1 : ticket;
+    }
+
+    /**
+     * 查询排队状态，同时按放行速率推进等候室
+     * @return [排队号（未排队为 0）, 已放行的最大排队号]
+     */
+    public long[] status(Long voucherId, Long userId) {
+        List<?> result = redisCircuitBreaker.execute(() -> stringRedisTemplate.execute(
+                QUEUE_STATUS_SCRIPT,
+                Collections.singletonList(queueKey(voucherId)),
+                userId.toString(), String.valueOf(seckillProperties.getAdmission().getAdmitRate()),
+                String.valueOf(Math.max(1, seckillProperties.getAdmission().getAdmitBurst()))));
+        if (result == null || result.size() < 2) {
+            return new long[]{0, 0};
+        }
+        long ticket = ((Number) result.get(0)).longValue();
+        long admitted = ((Number) result.get(1)).longValue();
+        if (ticket > 0 && ticket <= admitted) {
+            admittedUsers.put(voucherId + ":" + userId, Boolean.TRUE);
+        }
+        return new long[]{ticket, admitted};
+    }
+
+    /**
+     * 用户是否已经在等候室中轮到；Redis 不可用时放行，由秒杀本身的熔断处理
+     */
+    public boolean isAdmitted(Long voucherId, Long userId) {
+        if (admittedUsers.getIfPresent(voucherId + ":" + userId) != null) {
+            return true;
+        }
+        try {
+            long[] status = status(voucherId, userId);
+            return status[0] > 0 && status[0] <= status[1];
+        } catch (RuntimeException e) {
+            if (!RedisCircuitBreaker.isRedisFailure(e)) {
+                throw e;
+            }
+            return true;
+        }
+    }
+
+    private static String bucketKey(Long voucherId) {
+        return SECKILL_BUCKET_KEY + "{" + voucherId + "}";
+    }
+
+    private static String queueKey(Long voucherId) {
+        return SECKILL_QUEUE_KEY + "{" + voucherId + "}";
+    }
+
+    /**
+     * 本地令牌桶，按时间补充令牌，同一张秒杀券的请求竞争同一把锁，临界区只有几次算术运算
+     */
+    static class TokenBucket {
+
+        private final double ratePerNano;
+
+        private final double capacity;
+
+        private double tokens;
+
+        private long refilledAt;
+
+        TokenBucket(double ratePerSecond, int capacity) {
+            this.ratePerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.capacity = capacity;
+            this.tokens = capacity;
+            this.refilledAt = System.nanoTime();
+        }
+
+        synchronized boolean tryAcquire() {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - refilledAt) * ratePerNano);
+            refilledAt = now;
+            if (tokens < 1) {
+                return false;
+            }
+            tokens -= 1;
+            return true;
+        }
+    }
+}
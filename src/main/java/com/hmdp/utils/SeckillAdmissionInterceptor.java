@@ -0,0 +1,52 @@
+package com.hmdp.utils;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Map;
+
+/**
+ * @author Ace
+ * 秒杀准入拦截器，在登录拦截器之后执行，被拒绝的请求不进入秒杀流程（不生成订单 id、不执行 Lua 脚本）
+ */
+public class SeckillAdmissionInterceptor implements HandlerInterceptor {
+
+    private final SeckillAdmission seckillAdmission;
+
+    public SeckillAdmissionInterceptor(SeckillAdmission seckillAdmission) {
+        this.seckillAdmission = seckillAdmission;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        if (!seckillAdmission.isEnabled() || UserHolder.getUser() == null) {
+            return true;
+        }
+        //1.从路径 /voucher-order/seckill/{id} 中取出秒杀券 id
+        @SuppressWarnings("unchecked")
+        Map<String, String> variables = (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        if (variables == null || variables.get("id") == null) {
+            return true;
+        }
+        Long voucherId;
+        try {
+            voucherId = Long.valueOf(variables.get("id"));
+        } catch (NumberFormatException e) {
+            return true;
+        }
+        //2.启用了等候室，还没轮到的用户设置状态码为403，客户端继续查询排队状态；先于令牌桶判断，只有放行的用户消耗令牌
+        if (seckillAdmission.isWaitingRoom() && !seckillAdmission.isAdmitted(voucherId, UserHolder.getUser().getId())) {
+            response.setStatus(403);
+            return false;
+        }
+        //3.令牌桶没有令牌，设置状态码为429
+        if (!seckillAdmission.tryAcquire(voucherId)) {
+            response.setStatus(429);
+            response.setHeader("Retry-After", "1");
+            return false;
+        }
+        return true;
+    }
+}
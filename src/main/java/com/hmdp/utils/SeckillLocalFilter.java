@@ -0,0 +1,93 @@
+package com.hmdp.utils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_RESTOCK_CHANNEL;
+import static com.hmdp.utils.RedisConstants.SECKILL_SOLD_OUT_CHANNEL;
+
+/**
+ * 秒杀请求的本地过滤，不访问 Redis 直接拒绝一定会失败的请求
+ * 1.售罄标记：某个节点第一次得到库存不足的结果时标记，并通过 pub/sub 通知所有节点；补充库存时清除，
+ *   标记只保留几秒，没有收到清除通知（pub/sub 不保证送达）或库存被归还时，过期后重新以 Redis 为准
+ * 2.已下单标记：同一用户对同一秒杀券已经成功下单或被判定重复下单后，重复点击在本地拒绝
+ * 本地标记只用于提前拒绝，是否有资格仍以 Redis 中的 Lua 脚本为准
+ * @author Ace
+ */
+@Slf4j
+@Component
+public class SeckillLocalFilter {
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer listenerContainer;
+
+    /**
+     * 已售罄的秒杀券
+     */
+    private final Cache<Long, Boolean> soldOut = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterWrite(Duration.ofSeconds(5))
+            .build();
+
+    /**
+     * 已下单的 voucherId:userId
+     */
+    private final Cache<String, Boolean> ordered = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterWrite(Duration.ofMinutes(30))
+            .build();
+
+    @PostConstruct
+    private void init() {
+        //订阅其他节点的售罄和补充库存通知
+        listenerContainer.addMessageListener(
+                (message, pattern) -> soldOut.put(Long.valueOf(new String(message.getBody(), StandardCharsets.UTF_8)), Boolean.TRUE),
+                new ChannelTopic(SECKILL_SOLD_OUT_CHANNEL));
+        listenerContainer.addMessageListener(
+                (message, pattern) -> soldOut.invalidate(Long.valueOf(new String(message.getBody(), StandardCharsets.UTF_8))),
+                new ChannelTopic(SECKILL_RESTOCK_CHANNEL));
+    }
+
+    public boolean isSoldOut(Long voucherId) {
+        return soldOut.getIfPresent(voucherId) != null;
+    }
+
+    /**
+     * 标记售罄并通知所有节点，本节点已经标记过时不再广播
+     */
+    public void markSoldOut(Long voucherId) {
+        if (soldOut.asMap().putIfAbsent(voucherId, Boolean.TRUE) == null) {
+            log.info("秒杀券已售罄，voucherId: {}", voucherId);
+            stringRedisTemplate.convertAndSend(SECKILL_SOLD_OUT_CHANNEL, voucherId.toString());
+        }
+    }
+
+    /**
+     * 补充库存后清除所有节点的售罄标记
+     */
+    public void markRestocked(Long voucherId) {
+        soldOut.invalidate(voucherId);
+        stringRedisTemplate.convertAndSend(SECKILL_RESTOCK_CHANNEL, voucherId.toString());
+    }
+
+    public boolean hasOrdered(Long voucherId, Long userId) {
+        return ordered.getIfPresent(voucherId + ":" + userId) != null;
+    }
+
+    public void markOrdered(Long voucherId, Long userId) {
+        ordered.put(voucherId + ":" + userId, Boolean.TRUE);
+    }
+}
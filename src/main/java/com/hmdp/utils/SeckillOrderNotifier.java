@@ -0,0 +1,182 @@
+package com.hmdp.utils;
+
+import com.hmdp.config.SeckillProperties;
+import com.hmdp.dto.SeckillOrderStatus;
+import com.hmdp.entity.VoucherOrder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_STATUS_CHANNEL;
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_STATUS_KEY;
+
+/**
+ * 秒杀订单结果通知
+ * 1.订单消费者处理完一批订单后，把结果写入 seckill:order-status:{orderId} 哈希（status、userId），并通过 pub/sub 通知所有节点
+ * 2.客户端的长轮询、SSE 连接在本节点登记等待者，收到通知时回调，等待期间不占用请求线程
+ * 3.登记等待者之后再读一次哈希，避免结果在登记之前已经写入而错过通知
+ * @author Ace
+ */
+@Slf4j
+@Component
+public class SeckillOrderNotifier {
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Resource
+    private SeckillProperties seckillProperties;
+
+    /**
+     * 本节点上等待订单结果的回调
+     */
+    private final Map<Long, Set<Waiter>> waiters = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    private void init() {
+        //订阅订单结果通知，消息格式：orderId:userId:status，多个订单用逗号分隔
+        listenerContainer.addMessageListener((message, pattern) -> {
+            String body = new String(message.getBody(), StandardCharsets.UTF_8);
+            for (String item : body.split(",")) {
+                String[] parts = item.split(":");
+                if (parts.length == 3) {
+                    complete(Long.valueOf(parts[0]), Long.valueOf(parts[1]), parts[2]);
+                }
+            }
+        }, new ChannelTopic(SECKILL_ORDER_STATUS_CHANNEL));
+    }
+
+    /**
+     * 记录一批订单的处理结果并通知所有节点
+     * @param persisted 已写入数据库的订单
+     * @param failed 没有写入的订单：重复下单，或多次处理失败后移到死信队列的订单
+     */
+    public void publish(List<VoucherOrder> persisted, List<VoucherOrder> failed) {
+        if (persisted.isEmpty() && failed.isEmpty()) {
+            return;
+        }
+        long ttl = seckillProperties.getNotify().getStatusTtl().toMillis();
+        StringBuilder message = new StringBuilder();
+        //1.写入结果哈希
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            write(connection, persisted, SeckillOrderStatus.PERSISTED, ttl, message);
+            write(connection, failed, SeckillOrderStatus.FAILED, ttl, message);
+            return null;
+        });
+        //2.通知所有节点
+        stringRedisTemplate.convertAndSend(SECKILL_ORDER_STATUS_CHANNEL, message.toString());
+    }
+
+    /**
+     * 查询订单结果，不属于该用户的订单按未处理返回
+     * @return PENDING、PERSISTED 或 FAILED
+     */
+    public String status(Long orderId, Long userId) {
+        List<Object> values = stringRedisTemplate.opsForHash()
+                .multiGet(SECKILL_ORDER_STATUS_KEY + orderId, List.of("status", "userId"));
+        if (values.get(0) == null || !userId.toString().equals(values.get(1))) {
+            return SeckillOrderStatus.PENDING;
+        }
+        return (String) values.get(0);
+    }
+
+    /**
+     * 等待订单结果，结果已经写入时立即回调，回调最多执行一次
+     * @param listener 收到 PERSISTED 或 FAILED 时回调
+     * @return 取消等待，请求超时或连接断开时调用
+     */
+    public Runnable watch(Long orderId, Long userId, Consumer<String> listener) {
+        Waiter waiter = new Waiter(userId, listener);
+        //1.先登记等待者
+        waiters.computeIfAbsent(orderId, id -> ConcurrentHashMap.newKeySet()).add(waiter);
+        Runnable cancel = () -> remove(orderId, waiter);
+        //2.再读一次结果，登记之前已经写入的结果不会再有通知
+        try {
+            String status = status(orderId, userId);
+            if (!SeckillOrderStatus.PENDING.equals(status)) {
+                cancel.run();
+                waiter.fire(status);
+            }
+        } catch (RuntimeException e) {
+            //读取失败时继续等待通知
+            log.warn("查询订单结果失败，orderId: {}", orderId, e);
+        }
+        return cancel;
+    }
+
+    private void complete(Long orderId, Long userId, String status) {
+        Set<Waiter> set = waiters.get(orderId);
+        if (set == null) {
+            return;
+        }
+        for (Waiter waiter : set) {
+            if (waiter.userId.equals(userId)) {
+                remove(orderId, waiter);
+                waiter.fire(status);
+            }
+        }
+    }
+
+    private void remove(Long orderId, Waiter waiter) {
+        waiters.computeIfPresent(orderId, (id, set) -> {
+            set.remove(waiter);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    private static void write(RedisConnection connection,
+                              List<VoucherOrder> orders, String status, long ttl, StringBuilder message) {
+        for (VoucherOrder order : orders) {
+            byte[] key = toBytes(SECKILL_ORDER_STATUS_KEY + order.getId());
+            connection.hashCommands().hMSet(key, Map.of(
+                    toBytes("status"), toBytes(status),
+                    toBytes("userId"), toBytes(order.getUserId().toString())));
+            connection.keyCommands().pExpire(key, ttl);
+            if (!message.isEmpty()) {
+                message.append(',');
+            }
+            message.append(order.getId()).append(':').append(order.getUserId()).append(':').append(status);
+        }
+    }
+
+    private static byte[] toBytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static class Waiter {
+
+        private final Long userId;
+
+        private final Consumer<String> listener;
+
+        private final AtomicBoolean fired = new AtomicBoolean();
+
+        Waiter(Long userId, Consumer<String> listener) {
+            this.userId = userId;
+            this.listener = listener;
+        }
+
+        void fire(String status) {
+            if (fired.compareAndSet(false, true)) {
+                listener.accept(status);
+            }
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package com.hmdp.utils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hmdp.config.SeckillProperties;
+import com.hmdp.entity.SeckillVoucher;
+import com.hmdp.service.ISeckillVoucherService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.LOCK_SECKILL_REBALANCE_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_SHARDS_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_STOCK_KEY;
+
+/**
+ * 秒杀库存分片
+ * 热门秒杀券的库存拆分到多个 key：seckill:stock:{voucherId:n}，一人一单的集合也按分片拆分：seckill:order:{voucherId:n}，
+ * 同一分片的两个 key 使用同一个 hash tag，在 Redis Cluster 中落在同一个槽，可以在一个 Lua 脚本中访问
+ * 1.用户按 userId 取模固定属于一个分片，一人一单只在这个分片的集合中判断
+ * 2.所属分片库存不足时依次到其他分片扣减，其他分片只扣减库存
+ * 3.扣减库存和发送下单消息在同一个脚本中完成，与 seckill.lua 一致
+ * 4.临近结束时定期把剩余库存平均分配到各分片，减少跨分片扣减，同一张秒杀券同时只有一个节点在平衡
+ * @author Ace
+ */
+@Slf4j
+@Component
+public class SeckillStockShards {
+
+    private static final DefaultRedisScript<Long> CLAIM_SCRIPT;
+
+    private static final DefaultRedisScript<Long> FALLBACK_SCRIPT;
+
+    private static final DefaultRedisScript<Long> TAKE_SCRIPT;
+
+    private static final DefaultRedisScript<Long> COMPENSATE_SCRIPT;
+
+    static {
+        CLAIM_SCRIPT = new DefaultRedisScript<>();
+        CLAIM_SCRIPT.setLocation(new ClassPathResource("seckill_shard_claim.lua"));
+        CLAIM_SCRIPT.setResultType(Long.class);
+        FALLBACK_SCRIPT = new DefaultRedisScript<>();
+        FALLBACK_SCRIPT.setLocation(new ClassPathResource("seckill_shard_fallback.lua"));
+        FALLBACK_SCRIPT.setResultType(Long.class);
+        TAKE_SCRIPT = new DefaultRedisScript<>();
+        TAKE_SCRIPT.setLocation(new ClassPathResource("seckill_shard_take.lua"));
+        TAKE_SCRIPT.setResultType(Long.class);
+        COMPENSATE_SCRIPT = new DefaultRedisScript<>();
+        COMPENSATE_SCRIPT.setLocation(new ClassPathResource("seckill_compensate.lua"));
+        COMPENSATE_SCRIPT.setResultType(Long.class);
+    }
+
+    private static final ScheduledExecutorService REBALANCE_EXECUTOR = Executors.newSingleThreadScheduledExecutor();
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private ISeckillVoucherService seckillVoucherService;
+
+    @Resource
+    private SeckillProperties seckillProperties;
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    /**
+     * 秒杀券的分片数，创建后不会变化；其他节点刚创建的秒杀券在本地可能先被当作不分片，因此需要定期重新读取
+     */
+    private final Cache<Long, Integer> shardCounts = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterWrite(Duration.ofSeconds(10))
+            .build();
+
+    @PostConstruct
+    private void init() {
+        long interval = seckillProperties.getStock().getRebalanceInterval().toMillis();
+        REBALANCE_EXECUTOR.scheduleWithFixedDelay(() -> {
+            try {
+                rebalanceEndingVouchers();
+            } catch (Exception e) {
+                log.error("平衡秒杀库存失败", e);
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 写入秒杀券的库存，分片数大于 1 且库存不少于分片数时平均拆分到各分片
+     * @param voucherId 秒杀券 id
+     * @param stock 库存
+     */
+    public void initStock(Long voucherId, int stock) {
+        int shards = seckillProperties.getStock().getShards();
+        if (shards <= 1 || stock < shards) {
+            stringRedisTemplate.opsForValue().set(SECKILL_STOCK_KEY + voucherId, String.valueOf(stock));
+            return;
+        }
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (int shard = 0; shard < shards; shard++) {
+                //余数分给前面的分片
+                int shardStock = stock / shards + (shard < stock % shards ? 1 : 0);
+                connection.stringCommands().set(toBytes(stockKey(voucherId, shard)), toBytes(String.valueOf(shardStock)));
+            }
+            connection.stringCommands().set(toBytes(SECKILL_SHARDS_KEY + voucherId), toBytes(String.valueOf(shards)));
+            return null;
+        });
+        shardCounts.put(voucherId, shards);
+    }
+
+    /**
+     * 补充库存，分片的秒杀券补充到第一个分片，临近结束时由平衡任务分配到其他分片
+     * @param voucherId 秒杀券 id
+     * @param amount 补充的数量
+     */
+    public void addStock(Long voucherId, int amount) {
+        int shards = shardsOf(voucherId);
+        String key = shards > 1 ? stockKey(voucherId, 0) : SECKILL_STOCK_KEY + voucherId;
+        stringRedisTemplate.opsForValue().increment(key, amount);
+    }
+
+    /**
+     * 查询秒杀券在 Redis 中的剩余库存，分片的秒杀券为各分片之和，一次 MGET 查询所有秒杀券
+     * @param voucherIds 秒杀券 id
+     * @return voucherId 到剩余库存的映射，Redis 中没有库存的秒杀券不放入映射
+     */
+    public Map<Long, Integer> stockOf(List<Long> voucherIds) {
+        List<String> keys = new ArrayList<>(voucherIds.size());
+        List<Long> owners = new ArrayList<>(voucherIds.size());
+        for (Long voucherId : voucherIds) {
+            int shards = shardsOf(voucherId);
+            if (shards <= 1) {
+                keys.add(SECKILL_STOCK_KEY + voucherId);
+                owners.add(voucherId);
+                continue;
+            }
+            for (int shard = 0; shard < shards; shard++) {
+                keys.add(stockKey(voucherId, shard));
+                owners.add(voucherId);
+            }
+        }
+        Map<Long, Integer> stocks = new HashMap<>(voucherIds.size());
+        if (keys.isEmpty()) {
+            return stocks;
+        }
+        List<String> values = stringRedisTemplate.opsForValue().multiGet(keys);
+        if (values == null) {
+            return stocks;
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            String value = values.get(i);
+            if (value != null) {
+                stocks.merge(owners.get(i), Math.max(0, Integer.parseInt(value)), Integer::sum);
+            }
+        }
+        return stocks;
+    }
+
+    /**
+     * 秒杀券的分片数，为 1 时使用 seckill:stock:{voucherId} 单个 key
+     */
+    public int shardsOf(Long voucherId) {
+        return shardCounts.get(voucherId, id -> {
+            String shards = stringRedisTemplate.opsForValue().get(SECKILL_SHARDS_KEY + id);
+            return shards == null ? 1 : Integer.parseInt(shards);
+        });
+    }
+
+    /**
+     * 在分片库存上扣减一个库存、登记用户并发送下单消息
+     * @param orderId 订单 id
+     * @param streamKey 订单写入的 stream
+     * @return 扣减成功的分片；-1 表示库存不足；-2 表示重复下单
+     */
+    public int claim(Long voucherId, Long userId, long orderId, int shards, String streamKey) {
+        int home = homeShard(userId, shards);
+        //1.在用户所属分片上判断一人一单并扣减
+        Long result = stringRedisTemplate.execute(CLAIM_SCRIPT,
+                List.of(orderKey(voucherId, home), stockKey(voucherId, home), streamKey),
+                userId.toString(), voucherId.toString(), String.valueOf(orderId), String.valueOf(home));
+        if (result == null || result == 2) {
+            return -2;
+        }
+        if (result == 0) {
+            return home;
+        }
+        //2.所属分片库存不足，依次到其他分片扣减
+        for (int i = 1; i < shards; i++) {
+            int shard = (home + i) % shards;
+            Long taken = stringRedisTemplate.execute(FALLBACK_SCRIPT,
+                    List.of(stockKey(voucherId, shard), streamKey),
+                    userId.toString(), voucherId.toString(), String.valueOf(orderId), String.valueOf(shard));
+            if (taken != null && taken == 1) {
+                return shard;
+            }
+        }
+        //3.所有分片都没有库存，撤销登记
+        stringRedisTemplate.opsForSet().remove(orderKey(voucherId, home), userId.toString());
+        return -1;
+    }
+
+    /**
+     * 归还订单占用的库存和下单资格，订单消息移到死信队列时调用
+     * 只有用户仍在一人一单的集合中时才归还库存，重复调用不会多归还
+     * @param shard 扣减库存的分片，为 null 时是不分片的秒杀券
+     * @return 是否归还了库存
+     */
+    public boolean compensate(Long voucherId, Long userId, Integer shard) {
+        //1.不分片的秒杀券，与 seckill.lua 使用相同的 key
+        if (shard == null) {
+            return compensate(SECKILL_STOCK_KEY + voucherId, SECKILL_ORDER_KEY + voucherId, userId);
+        }
+        //2.在用户所属分片扣减的库存，两个 key 在同一个槽，一个脚本完成
+        int home = homeShard(userId, shardsOf(voucherId));
+        if (home == shard) {
+            return compensate(stockKey(voucherId, shard), orderKey(voucherId, home), userId);
+        }
+        //3.在其他分片扣减的库存，与用户所属分片不在同一个槽：先移除用户，移除成功再归还库存，期间进程退出会少卖一个库存，不会超卖
+        Long removed = stringRedisTemplate.opsForSet().remove(orderKey(voucherId, home), userId.toString());
+        if (removed == null || removed == 0) {
+            return false;
+        }
+        stringRedisTemplate.opsForValue().increment(stockKey(voucherId, shard));
+        return true;
+    }
+
+    private boolean compensate(String stockKey, String orderKey, Long userId) {
+        Long result = stringRedisTemplate.execute(COMPENSATE_SCRIPT, List.of(stockKey, orderKey), userId.toString());
+        return result != null && result == 1;
+    }
+
+    /**
+     * 平衡即将结束的秒杀券的分片库存
+     */
+    private void rebalanceEndingVouchers() {
+        LocalDateTime now = LocalDateTime.now();
+        Duration before = seckillProperties.getStock().getRebalanceBefore();
+        List<SeckillVoucher> vouchers = seckillVoucherService.query()
+                .gt("end_time", now)
+                .le("end_time", now.plus(before))
+                .gt("stock", 0)
+                .list();
+        for (SeckillVoucher voucher : vouchers) {
+            int shards = shardsOf(voucher.getVoucherId());
+            if (shards > 1) {
+                rebalance(voucher.getVoucherId(), shards);
+            }
+        }
+    }
+
+    /**
+     * 把剩余库存平均分配到各分片：先从多于平均值的分片取走多出的部分，再补到少于平均值的分片
+     * 每个节点都会运行平衡任务，用分布式锁保证同一张秒杀券同时只有一个节点在平衡，没有获取到锁时跳过本次平衡
+     * 各分片不在同一个槽中，取走和补入不能在一个脚本中完成，期间进程退出会少卖部分库存，不会超卖
+     */
+    private void rebalance(Long voucherId, int shards) {
+        RLock lock = redissonClient.getLock(LOCK_SECKILL_REBALANCE_KEY + voucherId);
+        if (!lock.tryLock()) {
+            return;
+        }
+        try {
+            moveSurplus(voucherId, shards);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void moveSurplus(Long voucherId, int shards) {
+        List<String> keys = new ArrayList<>(shards);
+        for (int shard = 0; shard < shards; shard++) {
+            keys.add(stockKey(voucherId, shard));
+        }
+        List<String> values = stringRedisTemplate.opsForValue().multiGet(keys);
+        if (values == null) {
+            return;
+        }
+        long[] stocks = new long[shards];
+        long total = 0;
+        for (int shard = 0; shard < shards; shard++) {
+            String value = values.get(shard);
+            stocks[shard] = value == null ? 0 : Math.max(0, Long.parseLong(value));
+            total += stocks[shard];
+        }
+        long max = Arrays.stream(stocks).max().orElse(0);
+        long min = Arrays.stream(stocks).min().orElse(0);
+        if (total == 0 || max - min <= 1) {
+            return;
+        }
+        //1.从多于平均值的分片取走多出的部分，期间可能已经卖出，实际取走的可能更少
+        long target = total / shards;
+        long moved = 0;
+        for (int shard = 0; shard < shards; shard++) {
+            if (stocks[shard] > target) {
+                long taken = take(voucherId, shard, stocks[shard] - target);
+                stocks[shard] -= taken;
+                moved += taken;
+            }
+        }
+        //2.补到少于平均值的分片，剩余的放回第一个分片
+        for (int shard = 0; shard < shards && moved > 0; shard++) {
+            if (stocks[shard] < target) {
+                long add = Math.min(target - stocks[shard], moved);
+                stringRedisTemplate.opsForValue().increment(keys.get(shard), add);
+                moved -= add;
+            }
+        }
+        if (moved > 0) {
+            stringRedisTemplate.opsForValue().increment(keys.get(0), moved);
+        }
+        log.debug("平衡秒杀库存，voucherId: {}，剩余库存: {}", voucherId, total);
+    }
+
+    /**
+     * 从分片中最多取走 amount 个库存
+     * @return 实际取走的数量
+     */
+    private long take(Long voucherId, int shard, long amount) {
+        Long taken = stringRedisTemplate.execute(TAKE_SCRIPT,
+                Collections.singletonList(stockKey(voucherId, shard)), String.valueOf(amount));
+        return taken == null ? 0 : taken;
+    }
+
+    private static int homeShard(Long userId, int shards) {
+        return (int) Math.floorMod(userId, (long) shards);
+    }
+
+    private static String stockKey(Long voucherId, int shard) {
+        return SECKILL_STOCK_KEY + "{" + voucherId + ":" + shard + "}";
+    }
+
+    private static String orderKey(Long voucherId, int shard) {
+        return SECKILL_ORDER_KEY + "{" + voucherId + ":" + shard + "}";
+    }
+
+    private static byte[] toBytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
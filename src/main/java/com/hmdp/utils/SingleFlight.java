@@ -0,0 +1,54 @@
+package com.hmdp.utils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 请求合并：同一 JVM 内对同一个 key 的并发加载只执行一次，其余线程共享同一个结果
+ * @author Ace
+ */
+public class SingleFlight {
+
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> calls = new ConcurrentHashMap<>();
+
+    /**
+     * 执行加载，如果该 key 已经有线程在加载，则等待其结果
+     * @param key 合并的 key
+     * @param loader 实际的加载逻辑
+     * @return 加载结果
+     * @param <R> 返回类型
+     */
+    @SuppressWarnings("unchecked")
+    public <R> R execute(String key, Supplier<R> loader) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = calls.putIfAbsent(key, future);
+        if (existing != null) {
+            //已经有线程在加载，等待其结果
+            try {
+                return (R) existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw e;
+            }
+        }
+        try {
+            R r = loader.get();
+            future.complete(r);
+            return r;
+        } catch (Throwable e) {
+            //Error 也要通知等待的线程，否则它们会一直阻塞在 join 上
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            //无论成功失败都移除，之后的请求重新加载
+            calls.remove(key, future);
+        }
+    }
+}
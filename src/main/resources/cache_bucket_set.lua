@@ -0,0 +1,30 @@
+-- 写入哈希桶中的一个字段，字段的过期时间记录在值的头部
+-- KEYS[1] 桶 key
+-- ARGV[1] 字段，ARGV[2] 序列化后的缓存值，ARGV[3] 过期时间（毫秒），不大于 0 表示字段不过期，ARGV[4] 当前时间戳（毫秒）
+-- 写入前桶的剩余时间：-2 表示桶不存在，-1 表示桶没有过期时间
+-- 随机抽查桶中最多 20 个字段，删除已经过期的，避免不再被读取的过期字段（例如不存在的 id 写入的空值）一直占用内存
+-- 值头部：魔数 0xCA、格式版本、编码器、标志位，标志位 FLAG_EXPIRE（0x01）时之后 8 字节为过期时间戳（毫秒，大端）
+local sampled = redis.call('hrandfield', KEYS[1], 20, 'withvalues')
+for i = 1, #sampled, 2 do
+    local value = sampled[i + 1]
+    if sampled[i] ~= ARGV[1] and #value >= 16 and string.byte(value, 1) == 202 and string.byte(value, 4) % 2 == 1 then
+        local expireAt = 0
+        for j = 5, 12 do
+            expireAt = expireAt * 256 + string.byte(value, j)
+        end
+        if expireAt <= tonumber(ARGV[4]) then
+            redis.call('hdel', KEYS[1], sampled[i])
+        end
+    end
+end
+local ttl = redis.call('pttl', KEYS[1])
+redis.call('hset', KEYS[1], ARGV[1], ARGV[2])
+local newTtl = tonumber(ARGV[3])
+if newTtl <= 0 then
+    -- 桶中有不过期的字段，桶本身也不能过期
+    redis.call('persist', KEYS[1])
+elseif ttl == -2 or (ttl >= 0 and ttl < newTtl) then
+    -- 桶的过期时间只延长不缩短，避免写入空值时缩短桶内其他数据的有效期
+    redis.call('pexpire', KEYS[1], newTtl)
+end
+return 1
@@ -0,0 +1,14 @@
+-- 按版本号写入逻辑过期缓存
+-- KEYS[1] 缓存 key，KEYS[2] 版本号 key
+-- ARGV[1] 序列化后的缓存值，ARGV[2] 回源前读取到的版本号，ARGV[3] 有效期（毫秒），不传时不过期，只有空值需要
+local current = tonumber(redis.call('get', KEYS[2]) or '0')
+if tonumber(ARGV[2]) < current then
+    -- 回源期间数据已被更新，放弃本次写入，避免旧数据覆盖新数据
+    return 0
+end
+if ARGV[3] then
+    redis.call('set', KEYS[1], ARGV[1], 'px', ARGV[3])
+else
+    redis.call('set', KEYS[1], ARGV[1])
+end
+return 1
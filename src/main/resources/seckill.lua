@@ -32,6 +32,7 @@ return 0]]
 ---------------------------------以上是阻塞队列的写法---------------------------------
 
 --redis stream消息队列
+--KEYS[1] 订单写入的 stream，分区时为 stream.orders.{userId % 分区数}
 
 --1.参数列表
 --1.1.优惠券id
@@ -65,5 +66,5 @@ redis.call('incrby',stockKey,-1)
 --3.5.下单
 redis.call('sadd',orderKey,userId)
 --3.6.发送消息到订单队列 xadd stream.orders * k1 v1 ...
-redis.call('xadd','stream.orders','*','userId',userId,'voucherId',voucherId,'id',orderId)
+redis.call('xadd',KEYS[1],'*','userId',userId,'voucherId',voucherId,'id',orderId)
 return 0
\ No newline at end of file
@@ -0,0 +1,10 @@
+-- 订单消息移到死信队列后归还 Redis 中的库存和下单资格
+-- 只有用户仍在一人一单的集合中时才归还库存，重复执行不会多归还
+-- KEYS[1] 库存 key，KEYS[2] 一人一单的集合
+-- ARGV[1] 用户 id
+-- 返回 1 表示归还了库存，0 表示已经归还过
+if redis.call('srem', KEYS[2], ARGV[1]) == 0 then
+    return 0
+end
+redis.call('incr', KEYS[1])
+return 1
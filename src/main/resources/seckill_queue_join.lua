@@ -0,0 +1,18 @@
+-- 进入秒杀等候室，领取排队号；同一用户重复领取返回原来的排队号
+-- KEYS[1] 等候室 seckill:queue:{voucherId}，字段 seq：已发放的最大排队号，admitted：已放行的最大排队号，u:{userId}：用户的排队号
+-- ARGV[1] 用户 id，ARGV[2] 最多排队人数，ARGV[3] 过期时间（秒）
+-- 返回排队号，排队人数已满时返回 -1
+local field = 'u:' .. ARGV[1]
+local ticket = redis.call('hget', KEYS[1], field)
+if ticket then
+    return tonumber(ticket)
+end
+local seq = tonumber(redis.call('hget', KEYS[1], 'seq') or '0')
+local admitted = tonumber(redis.call('hget', KEYS[1], 'admitted') or '0')
+if seq - admitted >= tonumber(ARGV[2]) then
+    return -1
+end
+seq = redis.call('hincrby', KEYS[1], 'seq', 1)
+redis.call('hset', KEYS[1], field, seq)
+redis.call('expire', KEYS[1], ARGV[3])
+return seq
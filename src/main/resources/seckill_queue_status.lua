@@ -0,0 +1,36 @@
+-- 按放行速率推进等候室，并返回用户的排队号和已放行的最大排队号
+-- 推进由查询触发，任意节点都可以推进，按 Redis 服务器时间计算应放行的人数，不会重复放行
+-- KEYS[1] 等候室 seckill:queue:{voucherId}
+-- ARGV[1] 用户 id，ARGV[2] 每秒放行的人数，ARGV[3] 一次推进最多放行的人数，长时间没有查询时不会一次放行大量用户
+-- 返回 {排队号（未排队为 0）, 已放行的最大排队号}
+local rate = tonumber(ARGV[2])
+local burst = tonumber(ARGV[3])
+local time = redis.call('time')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+local values = redis.call('hmget', KEYS[1], 'u:' .. ARGV[1], 'seq', 'admitted', 'advancedAt')
+local ticket = tonumber(values[1]) or 0
+local seq = tonumber(values[2]) or 0
+local admitted = tonumber(values[3]) or 0
+local advancedAt = tonumber(values[4])
+if seq == 0 then
+    return {ticket, admitted}
+end
+if advancedAt == nil or seq <= admitted then
+    -- 没有人在排队时不积累放行名额
+    redis.call('hset', KEYS[1], 'advancedAt', now)
+    return {ticket, admitted}
+end
+local n = math.floor((now - advancedAt) * rate / 1000)
+if n <= 0 then
+    return {ticket, admitted}
+end
+if n >= seq - admitted or n >= burst then
+    -- 排队的人全部放行，或者达到一次放行的上限，超出的名额不再累计
+    n = math.min(seq - admitted, burst)
+    redis.call('hset', KEYS[1], 'advancedAt', now)
+else
+    -- 保留不足一人的时间，下次推进时继续累计
+    redis.call('hset', KEYS[1], 'advancedAt', advancedAt + math.floor(n * 1000 / rate))
+end
+admitted = redis.call('hincrby', KEYS[1], 'admitted', n)
+return {ticket, admitted}
@@ -0,0 +1,17 @@
+-- 分片库存模式下，在用户所属的分片上校验一人一单、扣减库存并发送下单消息
+-- KEYS[1] 分片的订单集合 seckill:order:{voucherId:n}，KEYS[2] 分片的库存 seckill:stock:{voucherId:n}，两个 key 使用同一个 hash tag
+-- KEYS[3] 订单写入的 stream，与 seckill.lua 一样在同一个脚本中发送，扣减成功就一定有下单消息
+-- ARGV[1] 用户 id，ARGV[2] 优惠券 id，ARGV[3] 订单 id，ARGV[4] 分片编号
+-- 返回 0：扣减成功；1：用户已登记但本分片库存不足，需要到其他分片扣减；2：重复下单
+if redis.call('sismember', KEYS[1], ARGV[1]) == 1 then
+    return 2
+end
+-- 先登记用户，到其他分片扣减期间同一用户的并发请求会被拦截
+redis.call('sadd', KEYS[1], ARGV[1])
+if (tonumber(redis.call('get', KEYS[2])) or 0) <= 0 then
+    return 1
+end
+redis.call('incrby', KEYS[2], -1)
+-- 消息中带上扣减库存的分片，订单最终失败时据此归还库存
+redis.call('xadd', KEYS[3], '*', 'userId', ARGV[1], 'voucherId', ARGV[2], 'id', ARGV[3], 'shard', ARGV[4])
+return 0
@@ -0,0 +1,10 @@
+-- 用户所属分片库存不足时，从其他分片扣减一个库存并发送下单消息，用户已经由 seckill_shard_claim.lua 登记在所属分片
+-- KEYS[1] 分片的库存 seckill:stock:{voucherId:n}，KEYS[2] 订单写入的 stream
+-- ARGV[1] 用户 id，ARGV[2] 优惠券 id，ARGV[3] 订单 id，ARGV[4] 分片编号
+-- 返回 1：扣减成功；0：本分片库存不足
+if (tonumber(redis.call('get', KEYS[1])) or 0) <= 0 then
+    return 0
+end
+redis.call('incrby', KEYS[1], -1)
+redis.call('xadd', KEYS[2], '*', 'userId', ARGV[1], 'voucherId', ARGV[2], 'id', ARGV[3], 'shard', ARGV[4])
+return 1
@@ -0,0 +1,10 @@
+-- 从一个库存分片中最多取走 ARGV[1] 个库存
+-- KEYS[1] 分片的库存 seckill:stock:{voucherId:n}
+-- 返回实际取走的数量，库存不足时取走剩余的全部
+local stock = tonumber(redis.call('get', KEYS[1])) or 0
+local taken = math.min(stock, tonumber(ARGV[1]))
+if taken <= 0 then
+    return 0
+end
+redis.call('incrby', KEYS[1], -taken)
+return taken
@@ -0,0 +1,22 @@
+-- 全局令牌桶，使用 Redis 服务器时间，所有节点共享同一个时钟
+-- KEYS[1] 令牌桶 seckill:bucket:{voucherId}
+-- ARGV[1] 每秒生成的令牌数，ARGV[2] 桶的容量
+-- 返回 1：获取到令牌；0：令牌不足
+local rate = tonumber(ARGV[1])
+local capacity = tonumber(ARGV[2])
+local time = redis.call('time')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+local bucket = redis.call('hmget', KEYS[1], 'tokens', 'ts')
+local tokens = tonumber(bucket[1]) or capacity
+local ts = tonumber(bucket[2]) or now
+-- 按经过的时间补充令牌，不超过容量
+tokens = math.min(capacity, tokens + (now - ts) * rate / 1000)
+local allowed = 0
+if tokens >= 1 then
+    tokens = tokens - 1
+    allowed = 1
+end
+redis.call('hset', KEYS[1], 'tokens', tokens, 'ts', now)
+-- 桶装满所需时间之后不再需要保留
+redis.call('pexpire', KEYS[1], math.ceil(capacity / rate * 1000) + 1000)
+return allowed
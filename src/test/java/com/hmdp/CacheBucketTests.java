@@ -0,0 +1,146 @@
+package com.hmdp;
+
+import com.hmdp.config.CacheProperties;
+import com.hmdp.entity.Shop;
+import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.RedisData;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.ResolvableType;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.hmdp.utils.RedisConstants.CACHE_VERSION_KEY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 哈希桶存储：通过 CacheClient 写入、读取、删除、过期，数据存放在桶的字段中，不产生单独的 String key
+ * 不修改 Redis 配置
+ */
+@SpringBootTest
+class CacheBucketTests {
+
+    private static final String PREFIX = "cache:test:bucket:";
+
+    /**
+     * id 1 ~ 99 所在的桶
+     */
+    private static final String BUCKET_KEY = PREFIX + "bucket:0";
+
+    @Resource
+    private CacheClient cacheClient;
+
+    @Resource
+    private CacheProperties cacheProperties;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @BeforeEach
+    void setUp() {
+        CacheProperties.Bucket bucket = new CacheProperties.Bucket();
+        bucket.setSize(100);
+        cacheProperties.getBucket().put(PREFIX, bucket);
+    }
+
+    @AfterEach
+    void tearDown() {
+        cacheProperties.getBucket().remove(PREFIX);
+        stringRedisTemplate.delete(List.of(BUCKET_KEY,
+                CACHE_VERSION_KEY + PREFIX + 1, CACHE_VERSION_KEY + PREFIX + 2, CACHE_VERSION_KEY + PREFIX + 3));
+    }
+
+    @Test
+    void testSetGetDelete() {
+        String key = PREFIX + 1;
+        cacheClient.set(key, newShop(1L), 30L, TimeUnit.MINUTES);
+        //写入桶中的字段，没有单独的 String key
+        assertTrue(stringRedisTemplate.opsForHash().hasKey(BUCKET_KEY, "1"));
+        assertFalse(Boolean.TRUE.equals(stringRedisTemplate.hasKey(key)));
+        Shop shop = cacheClient.get(key, Shop.class);
+        assertEquals("bucket", shop.getName());
+
+        cacheClient.delete(key);
+        assertFalse(stringRedisTemplate.opsForHash().hasKey(BUCKET_KEY, "1"));
+        assertNull(cacheClient.get(key, Shop.class));
+    }
+
+    @Test
+    void testSetWithoutTtl() {
+        String key = PREFIX + 2;
+        cacheClient.set(key, newShop(2L));
+        assertTrue(stringRedisTemplate.opsForHash().hasKey(BUCKET_KEY, "2"));
+        assertEquals("bucket", cacheClient.<Shop>get(key, Shop.class).getName());
+        //桶中有不过期的字段，桶本身也不过期
+        assertEquals(-1L, stringRedisTemplate.getExpire(BUCKET_KEY));
+    }
+
+    @Test
+    void testExpire() throws InterruptedException {
+        String key = PREFIX + 1;
+        cacheClient.set(key, newShop(1L), 500L, TimeUnit.MILLISECONDS);
+        assertEquals("bucket", cacheClient.<Shop>get(key, Shop.class).getName());
+        Thread.sleep(1000);
+        //字段的过期时间记录在值的头部，过期后按不存在处理
+        assertNull(cacheClient.get(key, Shop.class));
+    }
+
+    @Test
+    void testSweepExpiredFields() throws InterruptedException {
+        //桶的过期时间取最长的字段，短期字段过期后桶仍然存在
+        cacheClient.set(PREFIX + 3, newShop(3L), 30L, TimeUnit.MINUTES);
+        cacheClient.set(PREFIX + 1, newShop(1L), 500L, TimeUnit.MILLISECONDS);
+        Thread.sleep(1000);
+        //过期字段不再被读取，写入同一个桶的其他字段时被删除
+        assertTrue(stringRedisTemplate.opsForHash().hasKey(BUCKET_KEY, "1"));
+        cacheClient.set(PREFIX + 2, newShop(2L), 30L, TimeUnit.MINUTES);
+        assertFalse(stringRedisTemplate.opsForHash().hasKey(BUCKET_KEY, "1"));
+        assertTrue(stringRedisTemplate.opsForHash().hasKey(BUCKET_KEY, "2"));
+    }
+
+    @Test
+    void testLogicalExpire() {
+        Type type = ResolvableType.forClassWithGenerics(RedisData.class, Shop.class).getType();
+        AtomicInteger loads = new AtomicInteger();
+        //1.未命中时回源，写入桶中
+        Shop shop = cacheClient.queryWithLogicalExpire(PREFIX, 3L, type, id -> {
+            loads.incrementAndGet();
+            return newShop(id);
+        }, 30L, TimeUnit.MINUTES);
+        assertEquals("bucket", shop.getName());
+        assertTrue(stringRedisTemplate.opsForHash().hasKey(BUCKET_KEY, "3"));
+        assertFalse(Boolean.TRUE.equals(stringRedisTemplate.hasKey(PREFIX + 3)));
+        //2.再次查询命中桶中的数据，不回源
+        shop = cacheClient.queryWithLogicalExpire(PREFIX, 3L, type, id -> {
+            loads.incrementAndGet();
+            return newShop(id);
+        }, 30L, TimeUnit.MINUTES);
+        assertEquals("bucket", shop.getName());
+        assertEquals(1, loads.get());
+        //3.删除后重新回源
+        cacheClient.delete(PREFIX + 3);
+        assertFalse(stringRedisTemplate.opsForHash().hasKey(BUCKET_KEY, "3"));
+        cacheClient.queryWithLogicalExpire(PREFIX, 3L, type, id -> {
+            loads.incrementAndGet();
+            return newShop(id);
+        }, 30L, TimeUnit.MINUTES);
+        assertEquals(2, loads.get());
+    }
+
+    private static Shop newShop(Long id) {
+        Shop shop = new Shop();
+        shop.setId(id);
+        shop.setName("bucket");
+        return shop;
+    }
+}
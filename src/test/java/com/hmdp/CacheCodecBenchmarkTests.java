@@ -0,0 +1,129 @@
+package com.hmdp;
+
+import cn.hutool.json.JSONUtil;
+import com.hmdp.config.CacheProperties;
+import com.hmdp.entity.Blog;
+import com.hmdp.entity.Shop;
+import com.hmdp.utils.CacheCodec;
+import com.hmdp.utils.CacheMetrics;
+import com.hmdp.utils.CacheValueSerializer;
+import com.hmdp.utils.JsonCacheCodec;
+import com.hmdp.utils.JsonbCacheCodec;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 缓存编码器对比：每条数据的字节数、编码和解码耗时
+ * 不依赖 Spring 容器和 Redis，可以单独运行
+ */
+class CacheCodecBenchmarkTests {
+
+    private static final int WARMUP = 20_000;
+    private static final int ROUNDS = 200_000;
+
+    private Shop newShop() {
+        return new Shop()
+                .setId(1L)
+                .setName("103茶餐厅")
+                .setTypeId(1L)
+                .setImages("https://qcloud.dpfile.com/pc/jiclIsCKmOI2arxKN1Uf0Hx3PucIJH8q0QSz-Z8llzcN56-_QiKuOvyio1OOxsRtFoXqu0G3iT2T27qat3WhLVEuLYk00OmSS1IdNpm8K8sG4JN9RIm2mTKcbLtc2o2vfCF2ubeXzk49OsGrXt_KYDCngOyCwZK-s3fqawWswzk.jpg,https://qcloud.dpfile.com/pc/IOf6VX3qaBgFXFVgp75w-KKJmWZjFc8GXDU8g9bQC6YGCpAmG00QbfT4vCCBj7njuzFvxlbkWx5uwqY2qcjixFEuLYk00OmSS1IdNpm8K8sG4JN9RIm2mTKcbLtc2o2vmIU_8ZGOT1OjpJmLxG6urQ.jpg")
+                .setArea("大关")
+                .setAddress("金华路锦昌文华苑29号")
+                .setX(120.149192)
+                .setY(30.316078)
+                .setAvgPrice(80L)
+                .setSold(4215)
+                .setComments(3035)
+                .setScore(37)
+                .setOpenHours("10:00-22:00")
+                .setCreateTime(LocalDateTime.of(2021, 12, 22, 18, 10, 39))
+                .setUpdateTime(LocalDateTime.of(2022, 1, 13, 17, 32, 19));
+    }
+
+    @Test
+    void compareCodecs() {
+        Shop shop = newShop();
+        //当前线上格式：hutool JSON 字符串
+        int legacyBytes = JSONUtil.toJsonStr(shop).getBytes(StandardCharsets.UTF_8).length;
+        for (int i = 0; i < WARMUP; i++) {
+            JSONUtil.toBean(JSONUtil.toJsonStr(shop), Shop.class);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            JSONUtil.toJsonStr(shop);
+        }
+        long legacyEncode = (System.nanoTime() - start) / ROUNDS;
+        String legacyJson = JSONUtil.toJsonStr(shop);
+        start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            JSONUtil.toBean(legacyJson, Shop.class);
+        }
+        long legacyDecode = (System.nanoTime() - start) / ROUNDS;
+        System.out.printf("%-8s bytes=%d encode=%dns decode=%dns%n", "hutool", legacyBytes, legacyEncode, legacyDecode);
+
+        for (CacheCodec codec : new CacheCodec[]{new JsonCacheCodec(), new JsonbCacheCodec()}) {
+            for (int i = 0; i < WARMUP; i++) {
+                codec.decode(codec.encode(shop), Shop.class);
+            }
+            start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                codec.encode(shop);
+            }
+            long encode = (System.nanoTime() - start) / ROUNDS;
+            byte[] bytes = codec.encode(shop);
+            start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                codec.decode(bytes, Shop.class);
+            }
+            long decode = (System.nanoTime() - start) / ROUNDS;
+            Shop decoded = codec.decode(bytes, Shop.class);
+            assertEquals(shop, decoded);
+            System.out.printf("%-8s bytes=%d encode=%dns decode=%dns%n", codec.name(), bytes.length, encode, decode);
+        }
+    }
+
+    @Test
+    void compareCompression() {
+        Blog blog = new Blog()
+                .setId(1L)
+                .setShopId(1L)
+                .setUserId(1L)
+                .setTitle("无尽浪漫的夜晚丨在万花丛中摇晃着红酒杯🍷品战斧牛排🥩")
+                .setImages(newShop().getImages())
+                .setContent("生活就是一半烟火·一半诗意<br>手执烟火谋生活·心怀诗意以谋爱·<br>".repeat(40))
+                .setLiked(100)
+                .setComments(10);
+        for (Object value : new Object[]{newShop(), blog}) {
+            for (int threshold : new int[]{0, 256}) {
+                CacheProperties properties = new CacheProperties();
+                properties.getCompression().setThreshold(threshold);
+                CacheValueSerializer serializer = new CacheValueSerializer(
+                        List.of(new JsonCacheCodec(), new JsonbCacheCodec()), properties,
+                        new CacheMetrics(new SimpleMeterRegistry()));
+                for (int i = 0; i < WARMUP; i++) {
+                    serializer.deserialize(serializer.serialize(value), value.getClass());
+                }
+                long start = System.nanoTime();
+                for (int i = 0; i < ROUNDS / 10; i++) {
+                    serializer.serialize(value);
+                }
+                long encode = (System.nanoTime() - start) / (ROUNDS / 10);
+                byte[] raw = serializer.serialize(value);
+                start = System.nanoTime();
+                for (int i = 0; i < ROUNDS / 10; i++) {
+                    serializer.deserialize(raw, value.getClass());
+                }
+                long decode = (System.nanoTime() - start) / (ROUNDS / 10);
+                assertEquals(value, serializer.deserialize(raw, value.getClass()));
+                System.out.printf("%-6s threshold=%-4d bytes=%d encode=%dns decode=%dns%n",
+                        value.getClass().getSimpleName(), threshold, raw.length, encode, decode);
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.hmdp;
+
+import com.hmdp.config.CacheProperties;
+import com.hmdp.entity.Shop;
+import com.hmdp.utils.CacheValueSerializer;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 缓存值压缩：编码后达到阈值的值压缩后写入，读取时按头部的标志位解压，数据不完整时报错
+ */
+@SpringBootTest(properties = "hmdp.cache.compression.threshold=1024")
+class CacheCompressionTests {
+
+    /**
+     * 头部标志位：编码器输出经过压缩
+     */
+    private static final byte FLAG_COMPRESSED = 0x02;
+
+    @Resource
+    private CacheValueSerializer valueSerializer;
+
+    @Resource
+    private CacheProperties cacheProperties;
+
+    private int threshold;
+
+    @BeforeEach
+    void setUp() {
+        threshold = cacheProperties.getCompression().getThreshold();
+    }
+
+    @Test
+    void testCompressLargeValue() {
+        //重复内容多的大对象，压缩后明显变小
+        Shop shop = new Shop().setId(1L).setName("103茶餐厅").setAddress("金华路锦昌文华苑29号".repeat(threshold / 10));
+        byte[] raw = valueSerializer.serialize(shop, System.currentTimeMillis() + 60_000, 10);
+        assertTrue((raw[3] & FLAG_COMPRESSED) != 0);
+        assertTrue(raw.length < shop.getAddress().length());
+        Shop decoded = valueSerializer.deserialize(raw, Shop.class);
+        assertEquals(shop.getAddress(), decoded.getAddress());
+        //过期时间头部不受压缩影响
+        assertEquals(10, valueSerializer.readExpire(raw)[1]);
+    }
+
+    @Test
+    void testSkipSmallValue() {
+        byte[] raw = valueSerializer.serialize(new Shop().setId(1L).setName("103茶餐厅"));
+        assertEquals(0, raw[3] & FLAG_COMPRESSED);
+        assertEquals("103茶餐厅", valueSerializer.<Shop>deserialize(raw, Shop.class).getName());
+    }
+
+    @Test
+    void testThreshold() {
+        //编码后不足阈值的值即使可以压缩也保存原文，达到阈值后压缩
+        String below = "x".repeat(threshold - 10);
+        byte[] raw = valueSerializer.serialize(below);
+        assertEquals(0, raw[3] & FLAG_COMPRESSED);
+        assertEquals(below, valueSerializer.deserialize(raw, String.class));
+        String above = "x".repeat(threshold);
+        raw = valueSerializer.serialize(above);
+        assertTrue((raw[3] & FLAG_COMPRESSED) != 0);
+        assertEquals(above, valueSerializer.deserialize(raw, String.class));
+    }
+
+    @Test
+    void testRejectTruncatedValue() {
+        Shop shop = new Shop().setId(1L).setAddress("金华路锦昌文华苑29号".repeat(threshold / 10));
+        byte[] raw = valueSerializer.serialize(shop);
+        assertTrue((raw[3] & FLAG_COMPRESSED) != 0);
+        byte[] truncated = Arrays.copyOf(raw, raw.length / 2);
+        assertThrows(IllegalStateException.class, () -> valueSerializer.deserialize(truncated, Shop.class));
+    }
+}
@@ -0,0 +1,59 @@
+package com.hmdp;
+
+import cn.hutool.core.lang.UUID;
+import com.hmdp.utils.CacheInvalidator;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 事务中的缓存失效：提交后才删除，回滚时不删除
+ */
+@SpringBootTest
+class CacheInvalidatorTests {
+
+    @Resource
+    private CacheInvalidator cacheInvalidator;
+
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Test
+    void testInvalidateAfterCommit() {
+        String key = "cache:test:invalidate:" + UUID.fastUUID().toString(true);
+        stringRedisTemplate.opsForValue().set(key, "v");
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                cacheInvalidator.invalidate(key);
+                //提交前不删除
+                assertTrue(Boolean.TRUE.equals(stringRedisTemplate.hasKey(key)));
+            });
+            assertFalse(Boolean.TRUE.equals(stringRedisTemplate.hasKey(key)));
+        } finally {
+            stringRedisTemplate.delete(key);
+        }
+    }
+
+    @Test
+    void testKeepOnRollback() {
+        String key = "cache:test:invalidate:" + UUID.fastUUID().toString(true);
+        stringRedisTemplate.opsForValue().set(key, "v");
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                cacheInvalidator.invalidate(key);
+                status.setRollbackOnly();
+            });
+            assertTrue(Boolean.TRUE.equals(stringRedisTemplate.hasKey(key)));
+        } finally {
+            stringRedisTemplate.delete(key);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.hmdp;
+
+import cn.hutool.core.lang.UUID;
+import cn.hutool.json.JSONUtil;
+import com.hmdp.entity.Shop;
+import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.CacheCodec;
+import com.hmdp.utils.CacheValueSerializer;
+import com.hmdp.utils.RedisData;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 缓存值的头部格式：旧版本的 JSON 字符串、各编码器写入的值都能读取
+ */
+@SpringBootTest
+class CacheValueSerializerTests {
+
+    /**
+     * 缓存值头部的魔数
+     */
+    private static final byte MAGIC = (byte) 0xCA;
+
+    @Resource
+    private CacheValueSerializer valueSerializer;
+
+    @Resource
+    private List<CacheCodec> codecs;
+
+    @Resource
+    private CacheClient cacheClient;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    private Shop newShop() {
+        return new Shop()
+                .setId(1L)
+                .setName("103茶餐厅")
+                .setTypeId(1L)
+                .setArea("大关")
+                .setAddress("金华路锦昌文华苑29号")
+                .setX(120.149192)
+                .setY(30.316078)
+                .setAvgPrice(80L)
+                .setOpenHours("10:00-22:00")
+                .setCreateTime(LocalDateTime.of(2021, 12, 22, 18, 10, 39));
+    }
+
+    @Test
+    void testRoundTrip() {
+        Shop shop = newShop();
+        byte[] raw = valueSerializer.serialize(shop);
+        assertEquals(MAGIC, raw[0]);
+        assertNull(valueSerializer.readExpire(raw));
+        Shop decoded = valueSerializer.deserialize(raw, Shop.class);
+        assertEquals(shop.getName(), decoded.getName());
+        assertEquals(shop.getCreateTime(), decoded.getCreateTime());
+    }
+
+    @Test
+    void testExpireHeader() {
+        long expireAt = System.currentTimeMillis() + 60_000;
+        byte[] raw = valueSerializer.serialize(newShop(), expireAt, 25);
+        assertArrayEquals(new long[]{expireAt, 25}, valueSerializer.readExpire(raw));
+        assertEquals("103茶餐厅", valueSerializer.<Shop>deserialize(raw, Shop.class).getName());
+    }
+
+    @Test
+    void testReadLegacyJson() {
+        //旧版本直接存储 hutool JSON 字符串，没有头部
+        byte[] legacy = JSONUtil.toJsonStr(newShop()).getBytes(StandardCharsets.UTF_8);
+        assertNull(valueSerializer.readExpire(legacy));
+        assertFalse(valueSerializer.isLogical(legacy));
+        assertFalse(valueSerializer.isEmpty(legacy));
+        assertEquals("103茶餐厅", valueSerializer.<Shop>deserialize(legacy, Shop.class).getName());
+    }
+
+    @Test
+    void testReadLegacyJsonFromRedis() {
+        //旧版本通过 StringRedisTemplate 写入的值，升级后通过 CacheClient 仍然可以读取
+        String key = "cache:test:legacy:" + UUID.fastUUID().toString(true);
+        stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(newShop()));
+        try {
+            Shop shop = cacheClient.get(key, Shop.class);
+            assertEquals("103茶餐厅", shop.getName());
+        } finally {
+            stringRedisTemplate.delete(key);
+        }
+    }
+
+    @Test
+    void testReadEveryCodec() {
+        //切换编码器后，其他编码器写入的值按头部中的编号解码
+        Shop shop = newShop();
+        for (CacheCodec codec : codecs) {
+            byte[] body = codec.encode(shop);
+            byte[] raw = ByteBuffer.allocate(4 + body.length)
+                    .put(MAGIC).put((byte) 1).put(codec.id()).put((byte) 0)
+                    .put(body)
+                    .array();
+            Shop decoded = valueSerializer.deserialize(raw, Shop.class);
+            assertEquals(shop.getName(), decoded.getName(), codec.name());
+            assertEquals(shop.getX(), decoded.getX(), codec.name());
+        }
+    }
+
+    @Test
+    void testLogicalAndEmpty() {
+        RedisData<Shop> redisData = new RedisData<>();
+        redisData.setData(newShop());
+        redisData.setExpireTime(LocalDateTime.now().plusMinutes(1));
+        assertTrue(valueSerializer.isLogical(valueSerializer.serializeLogical(redisData)));
+        assertFalse(valueSerializer.isLogical(valueSerializer.serialize(newShop())));
+
+        long expireAt = System.currentTimeMillis() + 60_000;
+        byte[] empty = valueSerializer.serializeEmpty(expireAt);
+        assertTrue(valueSerializer.isEmpty(empty));
+        assertEquals(expireAt, valueSerializer.readExpire(empty)[0]);
+        assertTrue(valueSerializer.isEmpty(new byte[0]));
+        assertFalse(valueSerializer.isEmpty(valueSerializer.serialize(newShop(), expireAt, 0)));
+    }
+}
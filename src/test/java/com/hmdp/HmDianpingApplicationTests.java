@@ -3,6 +3,8 @@ package com.hmdp;
 import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.bean.copier.CopyOptions;
 import cn.hutool.core.lang.UUID;
+import cn.hutool.json.JSONUtil;
+import com.hmdp.config.CacheProperties;
 import com.hmdp.dto.UserDTO;
 import com.hmdp.entity.Shop;
 import com.hmdp.entity.User;
@@ -11,20 +13,25 @@ import com.hmdp.service.impl.UserServiceImpl;
 import com.hmdp.utils.CacheClient;
 import com.hmdp.utils.RedisIdWorker;
 import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.geo.Point;
 import org.springframework.data.redis.connection.RedisGeoCommands;
 import org.springframework.data.redis.connection.RedisGeoCommands.GeoLocation;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
 
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -32,7 +39,10 @@ import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static com.hmdp.utils.RedisConstants.*;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+@Slf4j
 @SpringBootTest
 class HmDianpingApplicationTests {
 
@@ -51,6 +61,9 @@ class HmDianpingApplicationTests {
     @Resource
     private UserServiceImpl userService;
 
+    @Resource
+    private CacheProperties cacheProperties;
+
     private ExecutorService es = Executors.newFixedThreadPool(100);
 
 
@@ -79,8 +92,7 @@ class HmDianpingApplicationTests {
 
     @Test
     void testSaveRedis() throws InterruptedException {
-        Shop shop = shopService.getById(1L);
-        cacheClient.setWithLogicalExpire(CACHE_SHOP_KEY + 1L, shop, 10L, TimeUnit.SECONDS);
+        cacheClient.refreshWithLogicalExpire(CACHE_SHOP_KEY, 1L, shopService::getById, 10L, TimeUnit.SECONDS);
     }
 
     @Test
@@ -140,6 +152,117 @@ class HmDianpingApplicationTests {
         }
     }
 
+    /**
+     * 对比每条数据一个 String key 和哈希桶两种存储方式的内存占用，两种方式都通过 CacheClient 写入约 1KB 的商铺 JSON
+     * 商铺 JSON 远大于 hash-max-listpack-value 的默认值 64 字节，测试期间临时调大，结束后恢复
+     */
+    @Test
+    void testBucketMemory() {
+        int count = 20_000;
+        int bucketSize = 100;
+        Shop shop = newBucketShop();
+        int jsonBytes = JSONUtil.toJsonStr(shop).getBytes(StandardCharsets.UTF_8).length;
+        assertTrue(jsonBytes > 800 && jsonBytes < 1500, "商铺 JSON 应约为 1KB，实际 " + jsonBytes);
+        String stringPrefix = "cache:test:mem:string:";
+        String bucketPrefix = "cache:test:mem:bucket:";
+        CacheProperties.Bucket bucket = new CacheProperties.Bucket();
+        bucket.setSize(bucketSize);
+        cacheProperties.getBucket().put(bucketPrefix, bucket);
+        String oldListpackValue = getConfig(LISTPACK_VALUE);
+        setConfig(LISTPACK_VALUE, "2048");
+        try {
+            //1.每条数据一个 String key
+            long before = usedMemory();
+            writeBatches(stringPrefix, count, shop);
+            long stringBytes = usedMemory() - before;
+            //2.id / bucketSize 相同的数据放在同一个 Hash 中
+            before = usedMemory();
+            writeBatches(bucketPrefix, count, shop);
+            long bucketBytes = usedMemory() - before;
+            String encoding = stringRedisTemplate.execute((RedisCallback<String>) connection ->
+                    connection.keyCommands().encodingOf((bucketPrefix + "bucket:0").getBytes()).raw());
+            log.info("{} 条 {} 字节的商铺 JSON：String {} 字节（每条 {}），哈希桶 {} 字节（每条 {}，编码 {}），节省 {}%",
+                    count, jsonBytes, stringBytes, stringBytes / count, bucketBytes, bucketBytes / count,
+                    encoding, String.format("%.1f", 100.0 * (stringBytes - bucketBytes) / stringBytes));
+            //Redis 7 为 listpack，更早的版本为 ziplist
+            assertNotEquals("hashtable", encoding);
+            assertTrue(bucketBytes < stringBytes, "哈希桶 " + bucketBytes + " 字节，String " + stringBytes + " 字节");
+        } finally {
+            setConfig(LISTPACK_VALUE, oldListpackValue);
+            cacheProperties.getBucket().remove(bucketPrefix);
+            for (int i = 0; i < count; i += 1000) {
+                List<String> keys = new ArrayList<>(1000);
+                for (int j = i; j < i + 1000; j++) {
+                    keys.add(stringPrefix + j);
+                }
+                stringRedisTemplate.unlink(keys);
+            }
+            List<String> buckets = new ArrayList<>();
+            for (int i = 0; i < count / bucketSize; i++) {
+                buckets.add(bucketPrefix + "bucket:" + i);
+            }
+            stringRedisTemplate.unlink(buckets);
+        }
+    }
+
+    /**
+     * hash-max-listpack-value 在 Redis 7 之前的名称，Redis 7 中仍可使用
+     */
+    private static final String LISTPACK_VALUE = "hash-max-ziplist-value";
+
+    /**
+     * 接近线上数据的商铺，序列化后约 1KB
+     */
+    private static Shop newBucketShop() {
+        String image = "https://qcloud.dpfile.com/pc/jiclIsCKmOI2arxKN1Uf0Hx3PucIJH8q0QSz-Z8llzcN56-_QiKuOvyio1OOxsRtFoXqu0G3iT2T27qat3WhLVEuLYk00OmSS1IdNpm8K8sG4JN9RIm2mTKcbLtc2o2vfCF2ubeXzk49OsGrXt_KYDCngOyCwZK-s3fqawWswzk.jpg";
+        return new Shop()
+                .setName("103茶餐厅")
+                .setTypeId(1L)
+                .setImages(String.join(",", image, image, image, image))
+                .setArea("大关")
+                .setAddress("金华路锦昌文华苑29号")
+                .setX(120.149192)
+                .setY(30.316078)
+                .setAvgPrice(80L)
+                .setSold(4215)
+                .setComments(3035)
+                .setScore(37)
+                .setOpenHours("10:00-22:00")
+                .setCreateTime(LocalDateTime.of(2021, 12, 22, 18, 10, 39))
+                .setUpdateTime(LocalDateTime.of(2022, 1, 11, 16, 5, 47));
+    }
+
+    private void writeBatches(String keyPrefix, int count, Shop shop) {
+        for (long i = 0; i < count; i += 1000) {
+            List<Long> ids = new ArrayList<>(1000);
+            for (long j = i; j < i + 1000; j++) {
+                ids.add(j);
+            }
+            cacheClient.setBatch(keyPrefix, ids, batch -> batch.stream()
+                    .collect(Collectors.toMap(id -> id, id -> BeanUtil.copyProperties(shop, Shop.class).setId(id))),
+                    30L, TimeUnit.MINUTES);
+        }
+    }
+
+    private String getConfig(String name) {
+        Properties config = stringRedisTemplate.execute(
+                (RedisCallback<Properties>) connection -> connection.serverCommands().getConfig(name));
+        return config.getProperty(name);
+    }
+
+    private void setConfig(String name, String value) {
+        stringRedisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.serverCommands().setConfig(name, value);
+            return null;
+        });
+    }
+
+    private long usedMemory() {
+        Properties info = stringRedisTemplate.execute(
+                (RedisCallback<Properties>) connection -> connection.serverCommands().info("memory"));
+        return Long.parseLong(info.getProperty("used_memory"));
+    }
+
     @Test
     void testHyperLogLog(){
         String key = "hld";
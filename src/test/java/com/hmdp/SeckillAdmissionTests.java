@@ -0,0 +1,137 @@
+package com.hmdp;
+
+import com.hmdp.config.SeckillProperties;
+import com.hmdp.utils.SeckillAdmission;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_BUCKET_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_QUEUE_KEY;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 秒杀准入：本地令牌桶、Redis 全局令牌桶（seckill_token_bucket.lua）、
+ * 等候室的领号和按速率放行（seckill_queue_join.lua、seckill_queue_status.lua）
+ */
+@SpringBootTest
+class SeckillAdmissionTests {
+
+    @Resource
+    private SeckillAdmission seckillAdmission;
+
+    @Resource
+    private SeckillProperties seckillProperties;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    private SeckillProperties.Admission oldAdmission;
+
+    private SeckillProperties.Admission admission;
+
+    private Long voucherId;
+
+    @BeforeEach
+    void setUp() {
+        oldAdmission = seckillProperties.getAdmission();
+        admission = new SeckillProperties.Admission();
+        seckillProperties.setAdmission(admission);
+        //每个测试使用不同的秒杀券，本地令牌桶按秒杀券创建
+        voucherId = ThreadLocalRandom.current().nextLong(1_000_000_000L, 2_000_000_000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        seckillProperties.setAdmission(oldAdmission);
+        stringRedisTemplate.delete(List.of(
+                SECKILL_BUCKET_KEY + "{" + voucherId + "}",
+                SECKILL_QUEUE_KEY + "{" + voucherId + "}"));
+    }
+
+    @Test
+    void testLocalTokenBucket() {
+        admission.setLocalRate(1);
+        admission.setLocalBurst(2);
+        admission.setGlobalRate(0);
+        assertTrue(seckillAdmission.tryAcquire(voucherId));
+        assertTrue(seckillAdmission.tryAcquire(voucherId));
+        assertFalse(seckillAdmission.tryAcquire(voucherId));
+    }
+
+    @Test
+    void testGlobalTokenBucket() throws InterruptedException {
+        admission.setLocalRate(10_000);
+        admission.setLocalBurst(10_000);
+        admission.setGlobalRate(2);
+        admission.setGlobalBurst(3);
+        //1.桶满时可以连续取走容量个令牌
+        for (int i = 0; i < 3; i++) {
+            assertTrue(seckillAdmission.tryAcquire(voucherId));
+        }
+        assertFalse(seckillAdmission.tryAcquire(voucherId));
+        //2.按速率补充，每秒 2 个
+        Thread.sleep(600);
+        assertTrue(seckillAdmission.tryAcquire(voucherId));
+        assertFalse(seckillAdmission.tryAcquire(voucherId));
+    }
+
+    @Test
+    void testJoinQueue() {
+        admission.setMaxQueue(2);
+        assertEquals(1, seckillAdmission.join(voucherId, 1L));
+        //重复领取返回原来的排队号
+        assertEquals(1, seckillAdmission.join(voucherId, 1L));
+        assertEquals(2, seckillAdmission.join(voucherId, 2L));
+        //排队人数已满
+        assertEquals(-1, seckillAdmission.join(voucherId, 3L));
+        //未排队的用户排队号为 0
+        assertArrayEquals(new long[]{0, 0}, seckillAdmission.status(voucherId, 4L));
+    }
+
+    @Test
+    void testAdmitByRate() throws InterruptedException {
+        admission.setAdmitRate(5);
+        admission.setMaxQueue(2);
+        seckillAdmission.join(voucherId, 1L);
+        seckillAdmission.join(voucherId, 2L);
+        //1.第一次查询开始计时，还没有放行
+        assertArrayEquals(new long[]{1, 0}, seckillAdmission.status(voucherId, 1L));
+        assertFalse(seckillAdmission.isAdmitted(voucherId, 1L));
+        //2.每秒放行 5 人，200 毫秒后放行第 1 人，第 2 人还没轮到
+        Thread.sleep(250);
+        assertTrue(seckillAdmission.isAdmitted(voucherId, 1L));
+        assertFalse(seckillAdmission.isAdmitted(voucherId, 2L));
+        //3.再过 200 毫秒第 2 人轮到，已放行的人不再占用排队名额
+        Thread.sleep(250);
+        assertTrue(seckillAdmission.isAdmitted(voucherId, 2L));
+        assertEquals(3, seckillAdmission.join(voucherId, 3L));
+    }
+
+    @Test
+    void testAdmitBurst() throws InterruptedException {
+        admission.setAdmitRate(5);
+        admission.setAdmitBurst(1);
+        admission.setMaxQueue(3);
+        seckillAdmission.join(voucherId, 1L);
+        seckillAdmission.join(voucherId, 2L);
+        seckillAdmission.join(voucherId, 3L);
+        assertArrayEquals(new long[]{1, 0}, seckillAdmission.status(voucherId, 1L));
+        //1.700 毫秒积累了 3 个名额，一次只放行 1 人，超出的名额不再累计
+        Thread.sleep(700);
+        assertArrayEquals(new long[]{3, 1}, seckillAdmission.status(voucherId, 3L));
+        assertArrayEquals(new long[]{3, 1}, seckillAdmission.status(voucherId, 3L));
+        //2.之后仍按速率放行
+        Thread.sleep(250);
+        assertArrayEquals(new long[]{3, 2}, seckillAdmission.status(voucherId, 3L));
+    }
+}
@@ -0,0 +1,137 @@
+package com.hmdp;
+
+import com.hmdp.dto.SeckillOrderStatus;
+import com.hmdp.entity.SeckillVoucher;
+import com.hmdp.entity.Voucher;
+import com.hmdp.service.ISeckillVoucherService;
+import com.hmdp.service.IVoucherOrderService;
+import com.hmdp.service.IVoucherService;
+import com.hmdp.utils.RedisIdWorker;
+import com.hmdp.utils.SeckillOrderNotifier;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_STATUS_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_SHARDS_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_STOCK_KEY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 批量消费订单时的部分失败：一批中有无法写入的订单时整批回滚，再由 pendingList 逐条处理，
+ * 正常的订单写入数据库，无法写入的订单移到死信队列，重复下单的订单被忽略，库存只按实际写入的订单扣减
+ * 使用默认配置（一个分区 stream.orders、批量消费、maxDeliveries=5）
+ */
+@SpringBootTest
+class SeckillBatchConsumerTests {
+
+    private static final int STOCK = 10;
+
+    @Resource
+    private IVoucherService voucherService;
+
+    @Resource
+    private ISeckillVoucherService seckillVoucherService;
+
+    @Resource
+    private IVoucherOrderService voucherOrderService;
+
+    @Resource
+    private SeckillOrderNotifier seckillOrderNotifier;
+
+    @Resource
+    private RedisIdWorker redisIdWorker;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Test
+    void testPartialFailure() throws Exception {
+        LocalDateTime now = LocalDateTime.now();
+        Voucher voucher = new Voucher()
+                .setShopId(1L)
+                .setTitle("批量消费测试")
+                .setPayValue(100L)
+                .setActualValue(200L)
+                .setType(1)
+                .setStatus(1)
+                .setStock(STOCK)
+                .setBeginTime(now.minusMinutes(1))
+                .setEndTime(now.plusHours(1));
+        voucherService.addSeckillVoucher(voucher);
+        Long voucherId = voucher.getId();
+        long userBase = System.currentTimeMillis() * 1000;
+        //1.三个用户正常下单，第一个用户重复下单一次，另有一条不存在的秒杀券的订单
+        List<Map<String, String>> orders = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            orders.add(order(userBase + i, voucherId));
+        }
+        Map<String, String> duplicate = order(userBase, voucherId);
+        Map<String, String> invalid = order(userBase + 3, 999_999_999L);
+        orders.add(duplicate);
+        orders.add(invalid);
+        Map<Long, CompletableFuture<String>> statuses = new HashMap<>();
+        List<Runnable> cancels = new ArrayList<>();
+        for (Map<String, String> order : orders) {
+            CompletableFuture<String> status = new CompletableFuture<>();
+            Long orderId = Long.valueOf(order.get("id"));
+            cancels.add(seckillOrderNotifier.watch(orderId, Long.valueOf(order.get("userId")), status::complete));
+            statuses.put(orderId, status);
+        }
+        try {
+            //2.连续发送，在 linger 时间内落在同一批中，整批因不存在的秒杀券回滚后逐条处理
+            for (Map<String, String> order : orders) {
+                stringRedisTemplate.opsForStream().add(StreamRecords.newRecord().in("stream.orders").ofMap(order));
+            }
+            Map<Long, String> results = new HashMap<>();
+            for (Map.Entry<Long, CompletableFuture<String>> entry : statuses.entrySet()) {
+                results.put(entry.getKey(), entry.getValue().get(30, TimeUnit.SECONDS));
+            }
+            //3.第一个用户的两条订单只有一条写入，另外两个用户的订单写入，不存在的秒杀券的订单失败
+            long first = Long.parseLong(orders.get(0).get("id"));
+            long second = Long.parseLong(duplicate.get("id"));
+            assertEquals(1, (SeckillOrderStatus.PERSISTED.equals(results.get(first)) ? 1 : 0)
+                    + (SeckillOrderStatus.PERSISTED.equals(results.get(second)) ? 1 : 0));
+            for (int i = 1; i < 3; i++) {
+                long orderId = Long.parseLong(orders.get(i).get("id"));
+                assertEquals(SeckillOrderStatus.PERSISTED, results.get(orderId));
+                assertNotNull(voucherOrderService.getById(orderId));
+            }
+            long invalidId = Long.parseLong(invalid.get("id"));
+            assertEquals(SeckillOrderStatus.FAILED, results.get(invalidId));
+            assertNull(voucherOrderService.getById(invalidId));
+            //4.库存只扣减实际写入的 3 条
+            SeckillVoucher seckillVoucher = seckillVoucherService.getById(voucherId);
+            assertEquals(STOCK - 3, seckillVoucher.getStock());
+        } finally {
+            cancels.forEach(Runnable::run);
+            voucherOrderService.removeByIds(statuses.keySet());
+            seckillVoucherService.removeById(voucherId);
+            voucherService.removeById(voucherId);
+            List<String> keys = new ArrayList<>();
+            keys.add(SECKILL_STOCK_KEY + voucherId);
+            keys.add(SECKILL_SHARDS_KEY + voucherId);
+            statuses.keySet().forEach(orderId -> keys.add(SECKILL_ORDER_STATUS_KEY + orderId));
+            stringRedisTemplate.delete(keys);
+        }
+    }
+
+    private Map<String, String> order(long userId, long voucherId) {
+        return Map.of(
+                "userId", String.valueOf(userId),
+                "voucherId", String.valueOf(voucherId),
+                "id", String.valueOf(redisIdWorker.nextId("order")));
+    }
+}
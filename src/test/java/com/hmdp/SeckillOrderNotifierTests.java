@@ -0,0 +1,81 @@
+package com.hmdp;
+
+import com.hmdp.dto.SeckillOrderStatus;
+import com.hmdp.utils.RedisIdWorker;
+import com.hmdp.utils.SeckillOrderNotifier;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_STATUS_KEY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 订单结果通知：消费者无法写入的订单多次失败后移到死信队列，等待结果的客户端收到 FAILED
+ * 使用默认配置（一个分区 stream.orders、批量消费、maxDeliveries=5）
+ */
+@SpringBootTest
+class SeckillOrderNotifierTests {
+
+    @Resource
+    private SeckillOrderNotifier seckillOrderNotifier;
+
+    @Resource
+    private RedisIdWorker redisIdWorker;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    private long orderId;
+
+    private RecordId recordId;
+
+    @AfterEach
+    void tearDown() {
+        //删除测试写入的订单消息、订单结果和死信
+        stringRedisTemplate.delete(SECKILL_ORDER_STATUS_KEY + orderId);
+        if (recordId != null) {
+            stringRedisTemplate.opsForStream().delete("stream.orders", recordId);
+        }
+        List<MapRecord<String, Object, Object>> deadLetters = stringRedisTemplate.opsForStream()
+                .range("stream.orders.dead", Range.unbounded());
+        if (deadLetters == null) {
+            return;
+        }
+        for (MapRecord<String, Object, Object> record : deadLetters) {
+            if (String.valueOf(orderId).equals(record.getValue().get("id"))) {
+                stringRedisTemplate.opsForStream().delete("stream.orders.dead", record.getId());
+            }
+        }
+    }
+
+    @Test
+    void testDeadLetterNotifiesFailed() throws Exception {
+        orderId = redisIdWorker.nextId("order");
+        long userId = 1L;
+        //不存在的秒杀券，扣减数据库库存时 UPDATE 匹配 0 行，每次处理都会失败
+        long voucherId = 999_999_999L;
+        CompletableFuture<String> status = new CompletableFuture<>();
+        Runnable cancel = seckillOrderNotifier.watch(orderId, userId, status::complete);
+        try {
+            recordId = stringRedisTemplate.opsForStream().add(StreamRecords.newRecord()
+                    .in("stream.orders")
+                    .ofMap(Map.of("userId", String.valueOf(userId), "voucherId", String.valueOf(voucherId), "id", String.valueOf(orderId))));
+            assertEquals(SeckillOrderStatus.FAILED, status.get(30, TimeUnit.SECONDS));
+            assertEquals(SeckillOrderStatus.FAILED, seckillOrderNotifier.status(orderId, userId));
+        } finally {
+            cancel.run();
+        }
+    }
+}
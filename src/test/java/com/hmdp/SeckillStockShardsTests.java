@@ -0,0 +1,184 @@
+package com.hmdp;
+
+import com.hmdp.config.SeckillProperties;
+import com.hmdp.utils.SeckillStockShards;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_SHARDS_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_STOCK_KEY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 库存分片：在用户所属分片扣减、所属分片售罄时到其他分片扣减、扣减的同时发送下单消息、临近结束时平衡各分片库存、
+ * 订单移到死信队列时归还库存
+ */
+@SpringBootTest
+class SeckillStockShardsTests {
+
+    private static final int SHARDS = 4;
+
+    @Resource
+    private SeckillStockShards seckillStockShards;
+
+    @Resource
+    private SeckillProperties seckillProperties;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    private int oldShards;
+
+    private Long voucherId;
+
+    /**
+     * 测试专用的订单 stream，不会被订单消费者读取
+     */
+    private String streamKey;
+
+    @BeforeEach
+    void setUp() {
+        oldShards = seckillProperties.getStock().getShards();
+        seckillProperties.getStock().setShards(SHARDS);
+        //每个测试使用不同的秒杀券，分片数在本地缓存中按秒杀券记录
+        voucherId = ThreadLocalRandom.current().nextLong(1_000_000_000L, 2_000_000_000L);
+        streamKey = "stream.test.shards." + voucherId;
+    }
+
+    @AfterEach
+    void tearDown() {
+        seckillProperties.getStock().setShards(oldShards);
+        List<String> keys = new ArrayList<>();
+        keys.add(SECKILL_SHARDS_KEY + voucherId);
+        keys.add(streamKey);
+        for (int shard = 0; shard < SHARDS; shard++) {
+            keys.add(stockKey(shard));
+            keys.add(orderKey(shard));
+        }
+        stringRedisTemplate.delete(keys);
+    }
+
+    @Test
+    void testClaimHomeShard() {
+        seckillStockShards.initStock(voucherId, 8);
+        assertEquals(SHARDS, seckillStockShards.shardsOf(voucherId));
+        for (int shard = 0; shard < SHARDS; shard++) {
+            assertEquals("2", stringRedisTemplate.opsForValue().get(stockKey(shard)));
+        }
+        //用户所属分片为 userId % 分片数
+        long userId = 4L * 1000 + 3;
+        assertEquals(3, claim(userId, 1L));
+        assertEquals("1", stringRedisTemplate.opsForValue().get(stockKey(3)));
+        //重复下单
+        assertEquals(-2, claim(userId, 2L));
+        assertEquals(7, seckillStockShards.stockOf(List.of(voucherId)).get(voucherId));
+    }
+
+    @Test
+    void testClaimSendsOrder() {
+        seckillStockShards.initStock(voucherId, SHARDS);
+        //在所属分片和其他分片扣减都会发送下单消息，消息中带有扣减库存的分片
+        long userId = SHARDS * 10L + 1;
+        assertEquals(1, claim(userId, 1L));
+        assertEquals(2, claim(userId + SHARDS, 2L));
+        List<MapRecord<String, Object, Object>> records = stringRedisTemplate.opsForStream().range(streamKey, Range.unbounded());
+        assertEquals(2, records.size());
+        assertEquals(Map.of("userId", String.valueOf(userId), "voucherId", voucherId.toString(), "id", "1", "shard", "1"),
+                records.get(0).getValue());
+        assertEquals("2", records.get(1).getValue().get("shard"));
+        //重复下单不发送消息
+        assertEquals(-2, claim(userId, 3L));
+        assertEquals(2, stringRedisTemplate.opsForStream().size(streamKey));
+    }
+
+    @Test
+    void testFallbackToOtherShards() {
+        seckillStockShards.initStock(voucherId, SHARDS);
+        //所属分片都是 0 的用户，第一个在分片 0 扣减，之后的到其他分片扣减
+        List<Integer> claimed = new ArrayList<>();
+        for (int i = 0; i < SHARDS; i++) {
+            int shard = claim((long) SHARDS * (i + 1), i);
+            assertTrue(shard >= 0);
+            assertFalse(claimed.contains(shard));
+            claimed.add(shard);
+        }
+        assertEquals(0, claimed.get(0));
+        //所有分片都售罄，撤销登记，补充库存后可以再次下单
+        long userId = (long) SHARDS * 100;
+        assertEquals(-1, claim(userId, 100L));
+        assertFalse(Boolean.TRUE.equals(stringRedisTemplate.opsForSet().isMember(orderKey(0), String.valueOf(userId))));
+        assertEquals(SHARDS, stringRedisTemplate.opsForStream().size(streamKey));
+        stringRedisTemplate.opsForValue().increment(stockKey(0), 1);
+        assertEquals(0, claim(userId, 101L));
+    }
+
+    @Test
+    void testCompensate() {
+        seckillStockShards.initStock(voucherId, SHARDS);
+        //一个用户在所属分片扣减，一个用户到其他分片扣减
+        long userId = SHARDS * 10L + 1;
+        assertEquals(1, claim(userId, 1L));
+        assertEquals(2, claim(userId + SHARDS, 2L));
+        //归还库存和下单资格，重复归还不会多加库存
+        assertTrue(seckillStockShards.compensate(voucherId, userId, 1));
+        assertFalse(seckillStockShards.compensate(voucherId, userId, 1));
+        assertEquals("1", stringRedisTemplate.opsForValue().get(stockKey(1)));
+        assertTrue(seckillStockShards.compensate(voucherId, userId + SHARDS, 2));
+        assertFalse(seckillStockShards.compensate(voucherId, userId + SHARDS, 2));
+        assertEquals("1", stringRedisTemplate.opsForValue().get(stockKey(2)));
+        assertFalse(Boolean.TRUE.equals(stringRedisTemplate.opsForSet().isMember(orderKey(1), String.valueOf(userId + SHARDS))));
+        assertEquals(SHARDS, seckillStockShards.stockOf(List.of(voucherId)).get(voucherId));
+    }
+
+    @Test
+    void testRebalance() {
+        seckillStockShards.initStock(voucherId, 8);
+        //库存集中在分片 0
+        stringRedisTemplate.opsForValue().set(stockKey(0), "7");
+        stringRedisTemplate.opsForValue().set(stockKey(1), "0");
+        stringRedisTemplate.opsForValue().set(stockKey(2), "0");
+        stringRedisTemplate.opsForValue().set(stockKey(3), "1");
+        ReflectionTestUtils.invokeMethod(seckillStockShards, "rebalance", voucherId, SHARDS);
+        //总库存不变，各分片相差不超过 1
+        int total = 0;
+        int max = Integer.MIN_VALUE;
+        int min = Integer.MAX_VALUE;
+        for (int shard = 0; shard < SHARDS; shard++) {
+            int stock = Integer.parseInt(stringRedisTemplate.opsForValue().get(stockKey(shard)));
+            total += stock;
+            max = Math.max(max, stock);
+            min = Math.min(min, stock);
+        }
+        assertEquals(8, total);
+        assertTrue(max - min <= 1);
+        assertNotEquals(7, max);
+    }
+
+    private int claim(long userId, long orderId) {
+        return seckillStockShards.claim(voucherId, userId, orderId, SHARDS, streamKey);
+    }
+
+    private String stockKey(int shard) {
+        return SECKILL_STOCK_KEY + "{" + voucherId + ":" + shard + "}";
+    }
+
+    private String orderKey(int shard) {
+        return SECKILL_ORDER_KEY + "{" + voucherId + ":" + shard + "}";
+    }
+}
@@ -0,0 +1,119 @@
+package com.hmdp;
+
+import com.hmdp.utils.SingleFlight;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 请求合并：并发请求只加载一次，加载失败时所有等待的线程都收到异常
+ * 不依赖 Spring 容器和 Redis，可以单独运行
+ */
+class SingleFlightTests {
+
+    private static final int CALLERS = 16;
+
+    private final SingleFlight singleFlight = new SingleFlight();
+
+    private final ExecutorService es = Executors.newFixedThreadPool(CALLERS);
+
+    @AfterEach
+    void tearDown() {
+        es.shutdownNow();
+    }
+
+    @Test
+    void testLoadOnce() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        List<Future<Object>> results = callConcurrently(() -> {
+            loads.incrementAndGet();
+            return "shop";
+        });
+        for (Future<Object> result : results) {
+            assertEquals("shop", result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void testFailureReachesAllWaiters() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        //Error 不是 RuntimeException，也必须通知到所有等待的线程
+        List<Future<Object>> results = callConcurrently(() -> {
+            loads.incrementAndGet();
+            throw new AssertionError("load failed");
+        });
+        for (Future<Object> result : results) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(AssertionError.class, e.getCause());
+        }
+        assertEquals(1, loads.get());
+        //失败之后 key 已被移除，下一次请求重新加载
+        assertEquals("shop", singleFlight.execute("shop:1", () -> {
+            loads.incrementAndGet();
+            return "shop";
+        }));
+        assertEquals(2, loads.get());
+    }
+
+    /**
+     * 第一个线程进入加载后阻塞，其余线程都阻塞在等待结果上之后再放行
+     */
+    private List<Future<Object>> callConcurrently(Supplier<Object> loader) throws InterruptedException {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Thread> waiters = new ArrayList<>();
+        List<Future<Object>> results = new ArrayList<>();
+        results.add(es.submit(() -> singleFlight.execute("shop:1", () -> {
+            loading.countDown();
+            awaitQuietly(release);
+            return loader.get();
+        })));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i < CALLERS; i++) {
+            CountDownLatch started = new CountDownLatch(1);
+            Thread[] thread = new Thread[1];
+            results.add(es.submit(() -> {
+                thread[0] = Thread.currentThread();
+                started.countDown();
+                return singleFlight.execute("shop:1", () -> {
+                    throw new IllegalStateException("loaded twice");
+                });
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            waiters.add(thread[0]);
+        }
+        //等待其余线程都阻塞在 join 上
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        for (Thread waiter : waiters) {
+            while (waiter.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+                Thread.onSpinWait();
+            }
+        }
+        release.countDown();
+        return results;
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}